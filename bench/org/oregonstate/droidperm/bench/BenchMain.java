@@ -0,0 +1,34 @@
+package org.oregonstate.droidperm.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs DroidPerm benchmarks. Arguments are standard JMH options, e.g. a benchmark regex or -p scene=large. Results
+ * are written in JSON to bench-results.json, unless -rf or -rff are given. Must be run from droid-perm dir, same as
+ * DroidPermMain.
+ * <p>
+ * Logging in benchmark JVMs is limited to warnings, DroidPerm logs progress at info level inside timed code.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class BenchMain {
+
+    private static final String DEFAULT_RESULT_FILE = "bench-results.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions)
+                .jvmArgsAppend("-Dorg.slf4j.simpleLogger.defaultLogLevel=warn");
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmdOptions.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,79 @@
+package org.oregonstate.droidperm.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.oregonstate.droidperm.main.DroidPermMain;
+import org.oregonstate.droidperm.scene.BenchScene;
+import org.oregonstate.droidperm.scene.SyntheticSceneBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Scene shared by all benchmarks of a trial. Param scene selects the scene:
+ * <ul>
+ * <li>small, large: synthetic scenes, see SyntheticSceneBuilder.</li>
+ * <li>recorded: apk with a call graph snapshot saved by DroidPerm through --SAVE-CG-SNAPSHOT. Requires params apk,
+ * androidJar and snapshot, e.g. -p scene=recorded -p apk=app.apk -p androidJar=android.jar -p snapshot=app.dpcg.
+ * Param additionalClasspath is required if the snapshot was saved with --additionalCP.</li>
+ * </ul>
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+@State(Scope.Benchmark)
+public class BenchSceneState {
+
+    private static final Logger logger = LoggerFactory.getLogger(BenchSceneState.class);
+
+    @Param({"small", "large"})
+    public String scene;
+
+    @Param("")
+    public String apk;
+
+    @Param("")
+    public String androidJar;
+
+    @Param("")
+    public String snapshot;
+
+    /**
+     * Same format as --additionalCP.
+     */
+    @Param("")
+    public String additionalClasspath;
+
+    /**
+     * Same format as --PERM-DEF-FILES.
+     */
+    @Param("config/checker-param-sens-def.xml;config/perm-def-API-23.xml;config/perm-def-play-services.xml;"
+            + "config/javadoc-perm-def-API-23.xml;config/perm-def-manual.xml")
+    public String permDefFiles;
+
+    public BenchScene benchScene;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        switch (scene) {
+            case "small":
+                benchScene = new SyntheticSceneBuilder(50, 6, 100, 3, 10, 40, 1).build();
+                break;
+            case "large":
+                benchScene = new SyntheticSceneBuilder(500, 12, 2000, 4, 50, 200, 1).build();
+                break;
+            case "recorded":
+                if (apk.isEmpty() || androidJar.isEmpty() || snapshot.isEmpty()) {
+                    throw new IllegalArgumentException("Params apk, androidJar and snapshot are required for "
+                            + "recorded scene.");
+                }
+                DroidPermMain.additionalClasspath = additionalClasspath;
+                benchScene = BenchScene.loadRecorded(new File(apk), androidJar, new File(snapshot),
+                        DroidPermMain.buildPermDefFiles(permDefFiles));
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid scene: " + scene);
+        }
+        logger.info("DP: " + benchScene);
+    }
+}
@@ -0,0 +1,145 @@
+package org.oregonstate.droidperm.scene;
+
+import org.oregonstate.droidperm.main.DroidPermMain;
+import org.oregonstate.droidperm.perm.IPermissionDefProvider;
+import org.oregonstate.droidperm.perm.PermDefProviderFactory;
+import org.oregonstate.droidperm.traversal.CallGraphPermDefService;
+import org.oregonstate.droidperm.util.CallGraphUtil;
+import soot.*;
+import soot.jimple.toolkits.callgraph.Edge;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Scene prepared for benchmarks: call graph, points-to and the inputs of the traversal, as MethodPermDetector would
+ * compute them. Either synthetic, see SyntheticSceneBuilder, or recorded: an apk with a call graph snapshot saved
+ * through --SAVE-CG-SNAPSHOT.
+ * <p>
+ * Soot state is global, only the last created BenchScene is valid.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class BenchScene {
+
+    static final String DUMMY_MAIN_SIGNATURE = "<dummyMainClass: void dummyMainMethod(java.lang.String[])>";
+
+    private final MethodOrMethodContext dummyMain;
+    private final ClasspathFilter classpathFilter;
+
+    /**
+     * Null for synthetic scenes, which don't have permission definitions.
+     */
+    private final CallGraphPermDefService cgService;
+    private final Function<Edge, Set<String>> sensPermissions;
+
+    private final LinkedHashSet<Edge> sensEdges;
+    private final LinkedHashSet<Edge> checkerEdges;
+    private final LinkedHashSet<Edge> requestEdges;
+
+    /**
+     * Inputs of scene scans.
+     */
+    private final List<SootMethod> sensMethods;
+    private final Collection<SootField> sensFields;
+    private final List<SootMethod> checkers;
+    private final List<SootMethod> requesters;
+
+    BenchScene(ClasspathFilter classpathFilter, CallGraphPermDefService cgService,
+               Function<Edge, Set<String>> sensPermissions, List<SootMethod> sensMethods,
+               Collection<SootField> sensFields, List<SootMethod> checkers, List<SootMethod> requesters) {
+        this.dummyMain = Scene.v().getMethod(DUMMY_MAIN_SIGNATURE);
+        this.classpathFilter = classpathFilter;
+        this.cgService = cgService;
+        this.sensPermissions = sensPermissions;
+        this.sensMethods = sensMethods;
+        this.sensFields = sensFields;
+        this.checkers = checkers;
+        this.requesters = requesters;
+        sensEdges = CallGraphUtil.getEdgesInto(sensMethods);
+        checkerEdges = CallGraphUtil.getEdgesInto(checkers);
+        requestEdges = CallGraphUtil.getEdgesInto(requesters);
+    }
+
+    /**
+     * Same Soot setup as DroidPermMain with --LOAD-CG-SNAPSHOT, without running DroidPerm.
+     *
+     * @param androidJarORSdkDir android.jar, or Android SDK platforms dir.
+     * @param snapshot           call graph snapshot saved for this apk.
+     */
+    public static BenchScene loadRecorded(File apkFile, String androidJarORSdkDir, File snapshot,
+                                          List<File> permDefFiles) throws IOException {
+        DroidPermMain.resetSceneState();
+        IPermissionDefProvider permissionDefProvider = PermDefProviderFactory.create(permDefFiles, false);
+        DroidPermMain.initSootStandalone(androidJarORSdkDir, apkFile, permissionDefProvider);
+        CallGraphSnapshot.load(snapshot, apkFile);
+
+        ScenePermissionDefService scenePermDef = new ScenePermissionDefService(permissionDefProvider);
+        ClasspathFilter classpathFilter =
+                new ClasspathFilterService(scenePermDef).load(DroidPermMain.classpathExclusionListFile);
+        //same as MethodPermDetector.analyze(), the snapshot is saved before augmentation
+        if (DroidPermMain.augmentCallGraph) {
+            CallGraphUtil.augmentCGWithSafeEdges(classpathFilter);
+        }
+        CallGraphPermDefService cgService = new CallGraphPermDefService(scenePermDef);
+        return new BenchScene(classpathFilter, cgService, cgService::getPermissionsFor,
+                scenePermDef.getSceneMethodSensitives(), scenePermDef.getSceneFieldSensitives(),
+                scenePermDef.getPermCheckers(), scenePermDef.getPermRequesters());
+    }
+
+    public MethodOrMethodContext getDummyMain() {
+        return dummyMain;
+    }
+
+    public ClasspathFilter getClasspathFilter() {
+        return classpathFilter;
+    }
+
+    public CallGraphPermDefService getCgService() {
+        return cgService;
+    }
+
+    /**
+     * Permissions required by a sensitive edge, same as CallGraphPermDefService.getPermissionsFor().
+     */
+    public Set<String> getPermissionsFor(Edge sensEdge) {
+        return sensPermissions.apply(sensEdge);
+    }
+
+    public LinkedHashSet<Edge> getSensEdges() {
+        return sensEdges;
+    }
+
+    public LinkedHashSet<Edge> getCheckerEdges() {
+        return checkerEdges;
+    }
+
+    public LinkedHashSet<Edge> getRequestEdges() {
+        return requestEdges;
+    }
+
+    public List<SootMethod> getSensMethods() {
+        return sensMethods;
+    }
+
+    public Collection<SootField> getSensFields() {
+        return sensFields;
+    }
+
+    public List<SootMethod> getCheckers() {
+        return checkers;
+    }
+
+    public List<SootMethod> getRequesters() {
+        return requesters;
+    }
+
+    @Override
+    public String toString() {
+        return "BenchScene: " + Scene.v().getApplicationClasses().size() + " application classes, "
+                + Scene.v().getCallGraph().size() + " call graph edges, " + sensEdges.size() + " sensitive edges, "
+                + checkerEdges.size() + " checker edges, " + requestEdges.size() + " request edges";
+    }
+}
@@ -0,0 +1,65 @@
+package org.oregonstate.droidperm.scene;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.oregonstate.droidperm.bench.BenchSceneState;
+import org.oregonstate.droidperm.util.HierarchyUtil;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethod;
+import soot.jimple.Stmt;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of scene scans, with the collectors of UndetectedItemsUtil.sceneAnalysis().
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SceneScanBenchmark {
+
+    /**
+     * Same as --SCENE-SCAN-THREADS.
+     */
+    @Param({"1", "4"})
+    public int threads;
+
+    /**
+     * Traversal alone, without collectors. Baseline for scanCollectors().
+     */
+    @Benchmark
+    public void traverseClasses(BenchSceneState sceneState, Blackhole blackhole) {
+        SceneUtil.traverseClasses(Scene.v().getApplicationClasses(), sceneState.benchScene.getClasspathFilter(),
+                (stmt, method) -> blackhole.consume(stmt));
+    }
+
+    /**
+     * Abstract dispatch cache is cleared for each invocation, so dispatch is not memoized between invocations.
+     */
+    @Benchmark
+    public void scanCollectors(BenchSceneState sceneState, Blackhole blackhole) {
+        HierarchyUtil.reset();
+        BenchScene benchScene = sceneState.benchScene;
+        Multimap<SootMethod, Stmt> methodSens = HashMultimap.create();
+        Multimap<SootMethod, Stmt> checkers = HashMultimap.create();
+        Multimap<SootMethod, Stmt> requesters = HashMultimap.create();
+        Multimap<SootField, Stmt> fieldSens = HashMultimap.create();
+        new SceneScanner(threads).scanClasses(Scene.v().getApplicationClasses(), benchScene.getClasspathFilter(),
+                SceneUtil.createMethodUsagesCollector(benchScene.getSensMethods(), methodSens),
+                SceneUtil.createMethodUsagesCollector(benchScene.getCheckers(), checkers),
+                SceneUtil.createMethodUsagesCollector(benchScene.getRequesters(), requesters),
+                SceneUtil.createFieldUsagesCollector(benchScene.getSensFields(), fieldSens));
+        blackhole.consume(methodSens);
+        blackhole.consume(checkers);
+        blackhole.consume(requesters);
+        blackhole.consume(fieldSens);
+    }
+}
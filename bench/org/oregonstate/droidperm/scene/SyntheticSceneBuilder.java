@@ -0,0 +1,285 @@
+package org.oregonstate.droidperm.scene;
+
+import org.oregonstate.droidperm.main.DroidPermMain;
+import soot.*;
+import soot.jimple.*;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.jimple.toolkits.callgraph.Kind;
+import soot.options.Options;
+
+import java.util.*;
+
+/**
+ * Generates a synthetic app in a fresh Scene, together with its call graph and points-to, so that traversal can be
+ * benchmarked without FlowDroid. Generation is deterministic for a given seed.
+ * <p>
+ * Structure of the app:
+ * <ul>
+ * <li>Dummy main calls all callbacks. Each callback calls methods of the first layer.</li>
+ * <li>Layers of static methods. Each method calls methods of the next layer, methods of the last layer call
+ * sensitives, checkers and requesters, and read sensitive fields. All of them are declared in a framework class.</li>
+ * <li>Some methods invoke Task.run() on a newly allocated task. Call graph edges go to all implementations, like in
+ * CHA, while points-to has only the allocated type, so points-to refinement and hybrid dispatch are exercised.
+ * Implementations of run() call methods in the middle layer, which produces cycles.</li>
+ * </ul>
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class SyntheticSceneBuilder {
+
+    private static final int NR_PERMISSIONS = 10;
+
+    private final int nrCallbacks;
+    private final int nrLayers;
+    private final int layerWidth;
+    private final int fanout;
+    private final int nrTasks;
+    private final int nrSensitives;
+    private final Random random;
+
+    private final Jimple jimple = Jimple.v();
+    private final CallGraph callGraph = new CallGraph();
+    private final SnapshotPointsToAnalysis pointsToAnalysis = new SnapshotPointsToAnalysis();
+
+    private SootClass objectClass;
+    private RefType stringType;
+
+    private final List<SootMethod> sensitives = new ArrayList<>();
+    private final List<SootField> sensFields = new ArrayList<>();
+    private final Map<SootMethod, String> sensToPermMap = new HashMap<>();
+    private SootMethod checker;
+    private SootMethod requester;
+
+    private SootMethod taskRun;
+    private final List<SootClass> taskImpls = new ArrayList<>();
+
+    private final List<VirtualInvoke> virtualInvokes = new ArrayList<>();
+
+    public SyntheticSceneBuilder(int nrCallbacks, int nrLayers, int layerWidth, int fanout, int nrTasks,
+                                 int nrSensitives, long seed) {
+        this.nrCallbacks = nrCallbacks;
+        this.nrLayers = nrLayers;
+        this.layerWidth = layerWidth;
+        this.fanout = fanout;
+        this.nrTasks = nrTasks;
+        this.nrSensitives = nrSensitives;
+        this.random = new Random(seed);
+    }
+
+    public BenchScene build() {
+        DroidPermMain.resetSceneState();
+        Options.v().set_whole_program(true); //required by HierarchyUtil.
+        Scene scene = Scene.v();
+
+        objectClass = addClass("java.lang.Object", null, Modifier.PUBLIC, false);
+        stringType = addClass("java.lang.String", objectClass, Modifier.PUBLIC | Modifier.FINAL, false).getType();
+        createFramework();
+        createTasks();
+        List<List<SootMethod>> layers = createLayers();
+        SootClass callbacksClass = addClass("app.Callbacks", objectClass, Modifier.PUBLIC, true);
+        List<SootMethod> callbacks = new ArrayList<>();
+        for (int i = 0; i < nrCallbacks; i++) {
+            callbacks.add(addMethod(callbacksClass, "onEvent" + i, Collections.emptyList(),
+                    Modifier.PUBLIC | Modifier.STATIC));
+        }
+        SootClass dummyMainClass = addClass("dummyMainClass", objectClass, Modifier.PUBLIC, true);
+        SootMethod dummyMain = addMethod(dummyMainClass, "dummyMainMethod",
+                Collections.singletonList(ArrayType.v(stringType, 1)), Modifier.PUBLIC | Modifier.STATIC);
+
+        Body dummyMainBody = newBody(dummyMain);
+        callbacks.forEach(callback -> addStaticCall(dummyMainBody, callback));
+        finish(dummyMainBody);
+        callbacks.forEach(callback -> createCallerBody(callback, layers.get(0)));
+        for (int layer = 0; layer < nrLayers - 1; layer++) {
+            for (SootMethod method : layers.get(layer)) {
+                createCallerBody(method, layers.get(layer + 1));
+            }
+        }
+        layers.get(nrLayers - 1).forEach(this::createLeafBody);
+        taskImpls.forEach(impl -> createCallerBody(impl.getMethod(taskRun.getSubSignature()),
+                layers.get(nrLayers / 2)));
+
+        createPointsTo();
+        scene.setEntryPoints(Collections.singletonList(dummyMain));
+        scene.setCallGraph(callGraph);
+        scene.setPointsToAnalysis(pointsToAnalysis);
+        Options.v().set_allow_phantom_refs(false);
+
+        return new BenchScene(new ClasspathFilter(Collections.emptySet()), null,
+                edge -> Collections.singleton(sensToPermMap.get(edge.tgt())), sensitives, sensFields,
+                Collections.singletonList(checker), Collections.singletonList(requester));
+    }
+
+    /**
+     * Framework methods are native, their bodies are never analyzed.
+     */
+    private void createFramework() {
+        SootClass api = addClass("android.bench.Api", objectClass, Modifier.PUBLIC, false);
+        int modifiers = Modifier.PUBLIC | Modifier.STATIC | Modifier.NATIVE;
+        for (int i = 0; i < nrSensitives; i++) {
+            SootMethod sens = addMethod(api, "sensitive" + i, Collections.emptyList(), modifiers);
+            sensitives.add(sens);
+            sensToPermMap.put(sens, "android.permission.PERM" + i % NR_PERMISSIONS);
+
+            SootField field = new SootField("SENSITIVE_URI" + i, stringType,
+                    Modifier.PUBLIC | Modifier.STATIC | Modifier.FINAL);
+            api.addField(field);
+            sensFields.add(field);
+        }
+        checker = new SootMethod("checkSelfPermission", Collections.singletonList(stringType), IntType.v(),
+                modifiers);
+        api.addMethod(checker);
+        requester = addMethod(api, "requestPermissions", Collections.singletonList(stringType), modifiers);
+    }
+
+    private void createTasks() {
+        SootClass taskClass = addClass("app.Task", objectClass, Modifier.PUBLIC | Modifier.ABSTRACT, true);
+        taskRun = addMethod(taskClass, "run", Collections.emptyList(), Modifier.PUBLIC | Modifier.ABSTRACT);
+        for (int i = 0; i < nrTasks; i++) {
+            SootClass impl = addClass("app.Task" + i, taskClass, Modifier.PUBLIC, true);
+            addMethod(impl, taskRun.getName(), Collections.emptyList(), Modifier.PUBLIC);
+            taskImpls.add(impl);
+        }
+    }
+
+    private List<List<SootMethod>> createLayers() {
+        List<List<SootMethod>> layers = new ArrayList<>();
+        for (int layer = 0; layer < nrLayers; layer++) {
+            SootClass layerClass = addClass("app.Layer" + layer, objectClass, Modifier.PUBLIC, true);
+            List<SootMethod> methods = new ArrayList<>();
+            for (int i = 0; i < layerWidth; i++) {
+                methods.add(addMethod(layerClass, "m" + i, Collections.emptyList(),
+                        Modifier.PUBLIC | Modifier.STATIC));
+            }
+            layers.add(methods);
+        }
+        return layers;
+    }
+
+    /**
+     * Calls random methods of the next layer. Every other method also runs a random task.
+     */
+    private void createCallerBody(SootMethod method, List<SootMethod> nextLayer) {
+        Body body = newBody(method);
+        for (int i = 0; i < fanout; i++) {
+            addStaticCall(body, nextLayer.get(random.nextInt(nextLayer.size())));
+        }
+        if (!taskImpls.isEmpty() && random.nextBoolean()) {
+            addTaskRun(body, taskImpls.get(random.nextInt(taskImpls.size())));
+        }
+        finish(body);
+    }
+
+    /**
+     * Calls random sensitives. Some methods also check and request the permission of their first sensitive.
+     */
+    private void createLeafBody(SootMethod method) {
+        Body body = newBody(method);
+        SootMethod firstSens = null;
+        for (int i = 0; i < fanout; i++) {
+            SootMethod sens = sensitives.get(random.nextInt(sensitives.size()));
+            firstSens = firstSens != null ? firstSens : sens;
+            addStaticCall(body, sens);
+        }
+        if (random.nextInt(4) == 0) {
+            List<Value> args = Collections.singletonList(StringConstant.v(sensToPermMap.get(firstSens)));
+            addCall(body, jimple.newStaticInvokeExpr(checker.makeRef(), args), Kind.STATIC, checker);
+            addCall(body, jimple.newStaticInvokeExpr(requester.makeRef(), args), Kind.STATIC, requester);
+        }
+        Local uri = addLocal(body, "uri", stringType);
+        SootField field = sensFields.get(random.nextInt(sensFields.size()));
+        body.getUnits().add(jimple.newAssignStmt(uri, jimple.newStaticFieldRef(field.makeRef())));
+        finish(body);
+    }
+
+    private void addTaskRun(Body body, SootClass impl) {
+        Local task = addLocal(body, "task" + virtualInvokes.size(), taskRun.getDeclaringClass().getType());
+        body.getUnits().add(jimple.newAssignStmt(task, jimple.newNewExpr(impl.getType())));
+        List<SootMethod> allImpls = new ArrayList<>();
+        taskImpls.forEach(taskImpl -> allImpls.add(taskImpl.getMethod(taskRun.getSubSignature())));
+        addCall(body, jimple.newVirtualInvokeExpr(task, taskRun.makeRef(), Collections.emptyList()), Kind.VIRTUAL,
+                allImpls.toArray(new SootMethod[allImpls.size()]));
+        virtualInvokes.add(new VirtualInvoke(body.getMethod(), task, impl.getType()));
+    }
+
+    /**
+     * Points-to of each receiver, without context and in the context of each call site of the containing method.
+     */
+    private void createPointsTo() {
+        for (VirtualInvoke invoke : virtualInvokes) {
+            SnapshotPointsToAnalysis.SnapshotPointsToSet pointsTo = new SnapshotPointsToAnalysis.SnapshotPointsToSet(
+                    Collections.singleton(invoke.allocatedType), null);
+            pointsToAnalysis.putReachingObjects(invoke.receiver, null, pointsTo, false);
+            callGraph.edgesInto(invoke.method).forEachRemaining(
+                    edge -> pointsToAnalysis.putReachingObjects(invoke.receiver, edge.srcStmt(), pointsTo, false));
+        }
+    }
+
+    private SootClass addClass(String name, SootClass superclass, int modifiers, boolean application) {
+        SootClass sootClass = new SootClass(name, modifiers);
+        if (superclass != null) {
+            sootClass.setSuperclass(superclass);
+        }
+        Scene.v().addClass(sootClass);
+        if (application) {
+            sootClass.setApplicationClass();
+        } else {
+            sootClass.setLibraryClass();
+        }
+        return sootClass;
+    }
+
+    private static SootMethod addMethod(SootClass sootClass, String name, List<Type> parameterTypes, int modifiers) {
+        SootMethod method = new SootMethod(name, parameterTypes, VoidType.v(), modifiers);
+        sootClass.addMethod(method);
+        return method;
+    }
+
+    private Body newBody(SootMethod method) {
+        JimpleBody body = jimple.newBody(method);
+        method.setActiveBody(body);
+        if (!method.isStatic()) {
+            Local thisLocal = addLocal(body, "this", method.getDeclaringClass().getType());
+            body.getUnits().add(jimple.newIdentityStmt(thisLocal,
+                    jimple.newThisRef(method.getDeclaringClass().getType())));
+        }
+        return body;
+    }
+
+    private Local addLocal(Body body, String name, Type type) {
+        Local local = jimple.newLocal(name, type);
+        body.getLocals().add(local);
+        return local;
+    }
+
+    private void addStaticCall(Body body, SootMethod target) {
+        addCall(body, jimple.newStaticInvokeExpr(target.makeRef(), Collections.emptyList()), Kind.STATIC, target);
+    }
+
+    private Stmt addCall(Body body, InvokeExpr invoke, Kind kind, SootMethod... targets) {
+        Stmt stmt = jimple.newInvokeStmt(invoke);
+        body.getUnits().add(stmt);
+        for (SootMethod target : targets) {
+            callGraph.addEdge(new Edge(body.getMethod(), stmt, target, kind));
+        }
+        return stmt;
+    }
+
+    private void finish(Body body) {
+        body.getUnits().add(jimple.newReturnVoidStmt());
+    }
+
+    private static class VirtualInvoke {
+
+        private final SootMethod method;
+        private final Local receiver;
+        private final RefType allocatedType;
+
+        private VirtualInvoke(SootMethod method, Local receiver, RefType allocatedType) {
+            this.method = method;
+            this.receiver = receiver;
+            this.allocatedType = allocatedType;
+        }
+    }
+}
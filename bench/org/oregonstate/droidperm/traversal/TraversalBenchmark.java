@@ -0,0 +1,116 @@
+package org.oregonstate.droidperm.traversal;
+
+import com.google.common.collect.SetMultimap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.oregonstate.droidperm.bench.BenchSceneState;
+import org.oregonstate.droidperm.scene.BenchScene;
+import org.oregonstate.droidperm.util.HierarchyUtil;
+import org.oregonstate.droidperm.util.MyCollectors;
+import soot.MethodOrMethodContext;
+import soot.jimple.toolkits.callgraph.Edge;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the traversal phases in MethodPermDetector.analyze(), in sequential mode. Outflow trees are memoized
+ * by OutflowGraph, so benchmarks of holders use a fresh graph for each invocation.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TraversalBenchmark {
+
+    /**
+     * Inputs of the traversal, computed once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class TraversalInput {
+
+        BenchScene benchScene;
+        Set<Edge> trackedEdges;
+        OutflowGraph outflowGraph;
+        SetMultimap<MethodOrMethodContext, String> callbackToRequiredPermsMap;
+
+        @Setup(Level.Trial)
+        public void setup(BenchSceneState sceneState) {
+            benchScene = sceneState.benchScene;
+            trackedEdges = new LinkedHashSet<>();
+            trackedEdges.addAll(OutflowGraph.withParentEdges(benchScene.getSensEdges()));
+            trackedEdges.addAll(OutflowGraph.withParentEdges(benchScene.getCheckerEdges()));
+            trackedEdges.addAll(OutflowGraph.withParentEdges(benchScene.getRequestEdges()));
+            outflowGraph = newOutflowGraph();
+
+            //same as MethodPermDetector.buildCallbackToRequiredPermsMap()
+            ContextSensOutflowCPHolder sensitivePathsHolder = new ContextSensOutflowCPHolder(outflowGraph,
+                    benchScene.getSensEdges(), benchScene.getCgService());
+            callbackToRequiredPermsMap = sensitivePathsHolder.getSortedReachableCallbacks().stream()
+                    .collect(MyCollectors.toMultimap(
+                            callback -> callback,
+                            callback -> sensitivePathsHolder.getCallsToSensitiveFor(callback).stream()
+                                    .flatMap(sensEdge -> benchScene.getPermissionsFor(sensEdge).stream())
+                    ));
+        }
+
+        OutflowGraph newOutflowGraph() {
+            return new OutflowGraph(benchScene.getDummyMain(), trackedEdges, benchScene.getClasspathFilter(), null);
+        }
+    }
+
+    /**
+     * Graph without memoized outflow trees, for each invocation.
+     */
+    @State(Scope.Thread)
+    public static class FreshGraph {
+
+        OutflowGraph outflowGraph;
+
+        @Setup(Level.Invocation)
+        public void setup(TraversalInput input) {
+            outflowGraph = input.newOutflowGraph();
+        }
+    }
+
+    /**
+     * Includes points-to refinement, with cold hybrid dispatch cache.
+     */
+    @Benchmark
+    public OutflowGraph outflowGraph(TraversalInput input) {
+        HierarchyUtil.reset();
+        return input.newOutflowGraph();
+    }
+
+    /**
+     * Trees of all callbacks. Computed directly, getBreadthFirstOutflow() would serve them from the trees cache.
+     */
+    @Benchmark
+    public void breadthFirstOutflow(TraversalInput input, Blackhole blackhole) {
+        OutflowGraph graph = input.outflowGraph;
+        for (Edge callbackEdge : graph.getUiCallbacksBiMap().values()) {
+            blackhole.consume(graph.computeBreadthFirstOutflow(graph.getId(callbackEdge)));
+        }
+    }
+
+    /**
+     * Outflow trees, callbacks reaching each sensitive and sensitives reachable from each node.
+     */
+    @Benchmark
+    public ContextSensOutflowCPHolder sensitivePathsHolder(TraversalInput input, FreshGraph freshGraph) {
+        return new ContextSensOutflowCPHolder(freshGraph.outflowGraph, input.benchScene.getSensEdges(),
+                input.benchScene.getCgService());
+    }
+
+    @Benchmark
+    public CheckerAnalysis checkerAnalysis(TraversalInput input, FreshGraph freshGraph) {
+        BenchScene benchScene = input.benchScene;
+        return new CheckerAnalysis(freshGraph.outflowGraph, benchScene.getCheckerEdges(),
+                benchScene.getClasspathFilter(), benchScene.getCgService(), input.callbackToRequiredPermsMap,
+                "Checker", "Checkers");
+    }
+}
@@ -0,0 +1,84 @@
+package org.oregonstate.droidperm.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.oregonstate.droidperm.bench.BenchSceneState;
+import soot.*;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.toolkits.scalar.Pair;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of HierarchyUtil.resolveHybridDispatch(), with the queries performed by OutflowGraph: each virtual invoke
+ * with edges, without context and in the context of each call site of the containing method.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HybridDispatchBenchmark {
+
+    /**
+     * Pairs of static target method and points-to types.
+     */
+    private List<Pair<SootMethod, Set<Type>>> queries;
+
+    /**
+     * @param sceneState not used directly, ensures the scene is created first.
+     */
+    @Setup(Level.Trial)
+    public void setup(BenchSceneState sceneState) {
+        CallGraph cg = Scene.v().getCallGraph();
+        PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
+        Set<Stmt> virtualInvokes = new LinkedHashSet<>();
+        cg.iterator().forEachRemaining(edge -> {
+            if (edge.srcStmt() != null && PointsToUtil.getVirtualInvokeIfPresent(edge.srcStmt()) != null) {
+                virtualInvokes.add(edge.srcStmt());
+            }
+        });
+
+        queries = new ArrayList<>();
+        for (Stmt stmt : virtualInvokes) {
+            SootMethod staticTarget = PointsToUtil.getVirtualInvokeIfPresent(stmt).getMethod();
+            List<Stmt> contexts = new ArrayList<>();
+            contexts.add(null);
+            cg.edgesInto(cg.edgesOutOf(stmt).next().src()).forEachRemaining(edge -> contexts.add(edge.srcStmt()));
+            for (Stmt context : contexts) {
+                PointsToSet pointsTo = PointsToUtil.getPointsToIfVirtualCall(stmt, context, pta);
+                if (pointsTo != null && !pointsTo.possibleTypes().isEmpty()) {
+                    queries.add(new Pair<>(staticTarget, pointsTo.possibleTypes()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Caches are cleared for each invocation, as for a new apk.
+     */
+    @Benchmark
+    public void resolveHybridDispatchCold(Blackhole blackhole) {
+        HierarchyUtil.reset();
+        resolveAll(blackhole);
+    }
+
+    /**
+     * Served from the cache of the previous invocations.
+     */
+    @Benchmark
+    public void resolveHybridDispatchWarm(Blackhole blackhole) {
+        resolveAll(blackhole);
+    }
+
+    private void resolveAll(Blackhole blackhole) {
+        for (Pair<SootMethod, Set<Type>> query : queries) {
+            blackhole.consume(HierarchyUtil.resolveHybridDispatch(query.getO1(), query.getO2()));
+        }
+    }
+}
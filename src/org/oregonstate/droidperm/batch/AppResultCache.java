@@ -0,0 +1,130 @@
+package org.oregonstate.droidperm.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Persistent cache of DroidPerm xml outputs, used by DPBatchRunner for incremental runs.
+ * <p>
+ * An app result is valid if the SHA-256 key computed from the apk content and the analysis configuration is the same as
+ * the key stored with the result. Configuration consists of the content of configuration files, like permission
+ * definitions, classpath exclusion list and DroidPerm jar, plus analysis options. The configuration digest is computed
+ * once per batch run.
+ * <p>
+ * For each app, cache dir contains 2 files: appName.key with the hex key and the result, with the name of xmlOut.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+class AppResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppResultCache.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path cacheDir;
+    private final byte[] configDigest;
+
+    /**
+     * @param configFiles   files that affect the analysis result. Missing files are allowed, only their name is hashed.
+     * @param configOptions analysis options that affect the result.
+     */
+    AppResultCache(Path cacheDir, List<Path> configFiles, List<String> configOptions) throws IOException {
+        this.cacheDir = cacheDir;
+        Files.createDirectories(cacheDir);
+        MessageDigest digest = newDigest();
+        for (Path file : configFiles) {
+            update(digest, file.toString());
+            if (Files.exists(file)) {
+                updateWithContent(digest, file);
+            } else {
+                logger.warn("Result cache: config file not found: " + file);
+            }
+        }
+        for (String option : configOptions) {
+            update(digest, String.valueOf(option));
+        }
+        configDigest = digest.digest();
+    }
+
+    /**
+     * Reads the whole apk, should be called outside of synchronized code.
+     */
+    String computeKey(Path apk) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(configDigest);
+        updateWithContent(digest, apk);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * If a result for this app and key is cached, copy it to xmlOut.
+     *
+     * @return true if cached result was restored.
+     */
+    boolean restore(String appName, String key, Path xmlOut) throws IOException {
+        Path keyFile = getKeyFile(appName);
+        Path cachedXml = cacheDir.resolve(xmlOut.getFileName());
+        if (!Files.exists(keyFile) || !Files.exists(cachedXml)
+                || !new String(Files.readAllBytes(keyFile), StandardCharsets.UTF_8).trim().equals(key)) {
+            return false;
+        }
+        Files.copy(cachedXml, xmlOut, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    void store(String appName, String key, Path xmlOut) throws IOException {
+        if (!Files.exists(xmlOut)) {
+            return;
+        }
+        //key is written last, so an interrupted store leaves an invalid entry
+        Files.deleteIfExists(getKeyFile(appName));
+        Files.copy(xmlOut, cacheDir.resolve(xmlOut.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(getKeyFile(appName), key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path getKeyFile(String appName) {
+        return cacheDir.resolve(appName + ".key");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        //separator, to avoid ambiguities between consecutive values
+        digest.update((byte) 0);
+    }
+
+    private static void updateWithContent(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,203 @@
+package org.oregonstate.droidperm.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only journal of per-app batch results, one line per app. Each line is flushed as soon as the app is
+ * processed, so the results of an interrupted batch are not lost. Final batch statistics are computed from the journal
+ * in one streaming pass.
+ * <p>
+ * Line format: tab-separated key=value fields. First field is always the app name, last field is the end marker, so
+ * that lines cut by a crash are recognized. Keys and values cannot contain tabs or line breaks.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+class BatchJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchJournal.class);
+
+    static final String APP = "app";
+
+    /**
+     * Last field of every complete line.
+     */
+    private static final String END_MARKER = "end=ok";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path file;
+    private final BufferedWriter writer;
+
+    /**
+     * @param resume if true, new entries are appended to the existing journal. Otherwise the journal is cleared.
+     */
+    BatchJournal(Path file, boolean resume) throws IOException {
+        this.file = file;
+        if (resume) {
+            truncateIncompleteLastLine(file);
+        }
+        writer = resume
+                 ? Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)
+                 : Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Removes the last line if it was cut by a crash, i.e. the file is truncated back to its last line break. The app
+     * of that line is then processed again.
+     */
+    private static void truncateIncompleteLastLine(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long end = channel.size();
+            while (end > 0) {
+                long start = Math.max(0, end - BUFFER_SIZE);
+                buffer.clear().limit((int) (end - start));
+                channel.read(buffer, start);
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        truncate(channel, file, start + i + 1);
+                        return;
+                    }
+                }
+                end = start;
+            }
+            truncate(channel, file, 0);
+        }
+    }
+
+    private static void truncate(FileChannel channel, Path file, long size) throws IOException {
+        if (size < channel.size()) {
+            logger.warn("Removing incomplete last line of journal " + file);
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * @return names of the apps already in the journal, in journal order.
+     */
+    Set<String> readAppNames() throws IOException, JAXBException {
+        Set<String> appNames = new LinkedHashSet<>();
+        replay(entry -> appNames.add(entry.getAppName()));
+        return appNames;
+    }
+
+    void append(Entry entry) throws IOException {
+        writer.write(entry.format());
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Streams the journal entries in order. Malformed lines, like a last line truncated by a crash, are skipped.
+     */
+    void replay(EntryHandler handler) throws IOException, JAXBException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                Entry entry = Entry.parse(line);
+                if (entry != null) {
+                    handler.handle(entry);
+                } else if (!line.isEmpty()) {
+                    logger.warn("Skipping malformed journal line: " + line);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    interface EntryHandler {
+        void handle(Entry entry) throws JAXBException;
+    }
+
+    /**
+     * Results of one app.
+     */
+    static class Entry {
+
+        private final Map<String, String> fields = new LinkedHashMap<>();
+
+        Entry(String appName) {
+            fields.put(APP, appName);
+        }
+
+        private Entry() {
+        }
+
+        String getAppName() {
+            return fields.get(APP);
+        }
+
+        Entry put(String key, Object value) {
+            fields.put(key, String.valueOf(value));
+            return this;
+        }
+
+        /**
+         * @return the value for the key, or null if absent.
+         */
+        String get(String key) {
+            return fields.get(key);
+        }
+
+        int getInt(String key) {
+            return Integer.parseInt(fields.get(key));
+        }
+
+        Map<String, String> getFields() {
+            return fields;
+        }
+
+        String format() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append('\t');
+                }
+                sb.append(field.getKey()).append('=').append(field.getValue());
+            }
+            return sb.append('\t').append(END_MARKER).toString();
+        }
+
+        /**
+         * @return parsed entry, or null if line is malformed or doesn't end with the end marker.
+         */
+        static Entry parse(String line) {
+            if (!line.endsWith("\t" + END_MARKER)) {
+                return null;
+            }
+            Entry entry = new Entry();
+            for (String field : line.substring(0, line.length() - END_MARKER.length() - 1).split("\t")) {
+                int separator = field.indexOf('=');
+                if (separator <= 0) {
+                    return null;
+                }
+                entry.fields.put(field.substring(0, separator), field.substring(separator + 1));
+            }
+            return entry.getAppName() != null ? entry : null;
+        }
+    }
+}
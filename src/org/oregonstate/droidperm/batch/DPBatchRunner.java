@@ -3,9 +3,12 @@ package org.oregonstate.droidperm.batch;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.google.common.base.Throwables;
 import com.google.common.collect.*;
+import org.oregonstate.droidperm.jaxb.JaxbBinaryCodec;
 import org.oregonstate.droidperm.jaxb.JaxbCallbackList;
 import org.oregonstate.droidperm.jaxb.JaxbUtil;
+import org.oregonstate.droidperm.main.DroidPermMain;
 import org.oregonstate.droidperm.perm.miner.jaxb_out.PermTargetKind;
 import org.oregonstate.droidperm.perm.miner.jaxb_out.PermissionDef;
 import org.oregonstate.droidperm.perm.miner.jaxb_out.PermissionDefList;
@@ -19,10 +22,16 @@ import soot.jimple.infoflow.InfoflowConfiguration;
 
 import javax.xml.bind.JAXBException;
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -83,6 +92,47 @@ public class DPBatchRunner {
                     + "No storage permissions. Used in conjunction with COLLECT_SENSITIVES mode.")
     private boolean collectMethodOrFieldSensOnlyApps;
 
+    @Parameter(names = "--parallelism", description = "Number of apps analyzed concurrently. "
+            + "Each app is still analyzed in a separate process. Reports are the same as for a sequential run.")
+    private int parallelism = 1;
+
+    @Parameter(names = "--total-heap-mb", description = "If specified, the total max heap of all concurrent DroidPerm "
+            + "processes, in MB. Each process receives an equal share through -Xmx.")
+    private Integer totalHeapMb;
+
+    @Parameter(names = "--app-timeout", description = "If specified, wall-clock timeout for the analysis of one app, "
+            + "in seconds. Analysis process is killed when exceeded.")
+    private Integer appTimeout;
+
+    @Parameter(names = "--max-rss-mb", description = "If specified, max resident memory of the analysis process of "
+            + "one app, in MB. Analysis process is killed when exceeded. Only supported on Linux.")
+    private Integer maxRssMb;
+
+    @Parameter(names = "--retry-cg-algo", description = "If specified, apps killed for timeout or memory limit are "
+            + "analyzed again with this call graph algorithm, usually a cheaper one: SPARK or CHA.")
+    private InfoflowConfiguration.CallgraphAlgorithm retryCgAlgo;
+
+    @Parameter(names = "--incremental", description = "If specified, results are stored in a persistent cache, keyed "
+            + "by the content of the apk and of the analysis configuration. Apps with a valid cached result are not "
+            + "analyzed again.")
+    private boolean incremental;
+
+    @Parameter(names = "--result-cache-dir", description = "Directory of the result cache for --incremental. "
+            + "Default is result-cache inside log dir.")
+    private Path resultCacheDir;
+
+    @Parameter(names = "--journal", description = "Results journal, one line per app, written as apps are analyzed. "
+            + "Final statistics are computed from it. Default is _batch_journal.txt inside log dir.")
+    private Path journalFile;
+
+    @Parameter(names = "--resume", description = "If specified, apps already present in the journal are not analyzed "
+            + "again. Used to resume an interrupted batch.")
+    private boolean resume;
+
+    @Parameter(names = "--binary-out", description = "If specified, DroidPerm results are saved in the compact binary "
+            + "format instead of xml. Faster to load for large batches. Use JaxbUtil.convert() to export them to xml.")
+    private boolean binaryOut;
+
     @Parameter(names = "--help", help = true)
     private boolean help = false;
 
@@ -95,6 +145,36 @@ public class DPBatchRunner {
     private List<String> appsWithSafeMethodOrFieldSensOnly = new ArrayList<>();
     private List<String> appsDeclaringNonStoragePermOnly = new ArrayList<>();
     private List<String> appsForEvaluation = new ArrayList<>();
+    private List<String> appsTimedOut = new ArrayList<>();
+    private List<String> appsExceedingMemory = new ArrayList<>();
+
+    /**
+     * Map from retried apps to the description of their attempts.
+     */
+    private Map<String, String> appsRetried = new LinkedHashMap<>();
+
+    private static final long PROCESS_POLL_INTERVAL_MS = 1000;
+
+    /**
+     * Null if incremental mode is disabled.
+     */
+    private AppResultCache resultCache;
+    private int appsFromCache;
+
+    private BatchJournal journal;
+
+    //Journal keys
+    private static final String STATUS = "status";
+    private static final String RETRIED = "retried";
+    private static final String REACHED_SENS_EDGES = "reachedSensEdges";
+    private static final String CHA_REACHABLE_SENS_EDGES = "chaReachableSensEdges";
+    private static final String UNREACHABLE_SENS_EDGES = "unreachableSensEdges";
+    private static final String ANNO_FILE = "annoFile";
+    private static final String SPECTRUM_PREFIX = "spectrum.";
+    private static final String SAFE_METHOD_SENS_ONLY = "safeMethodSensOnly";
+    private static final String SAFE_METHOD_OR_FIELD_SENS_ONLY = "safeMethodOrFieldSensOnly";
+    private static final String DECLARES_NON_STORAGE_PERM_ONLY = "declaresNonStoragePermOnly";
+    private static final String FOR_EVALUATION = "forEvaluation";
 
     private enum PermUsage {
         MANIFEST, CODE, SENSITIVE
@@ -236,8 +316,24 @@ public class DPBatchRunner {
         logger.info("fieldSensitivesEnabled: " + fieldSensitivesEnabled);
         logger.info("extraOpts: " + extraOpts + "\n");
         logger.info("vmArgs: " + vmArgs + "\n");
+        logger.info("parallelism: " + parallelism);
+        logger.info("totalHeapMb: " + totalHeapMb);
+        logger.info("appTimeout: " + appTimeout);
+        logger.info("maxRssMb: " + maxRssMb);
+        logger.info("retryCgAlgo: " + retryCgAlgo);
+        logger.info("incremental: " + incremental);
+        logger.info("resultCacheDir: " + resultCacheDir);
+        logger.info("journalFile: " + journalFile);
+        logger.info("resume: " + resume);
+        logger.info("binaryOut: " + binaryOut + "\n");
+        if (parallelism < 1) {
+            throw new ParameterException("--parallelism must be at least 1");
+        }
 
         Files.createDirectories(logDir);
+        if (incremental && !fastRun) {
+            resultCache = createResultCache();
+        }
         ListMultimap<String, Path> appNamesToApksMap = Files.list(appsDir).sorted()
                 .filter(path -> Files.isDirectory(path))
                 .collect(MyCollectors.toMultimap(
@@ -254,6 +350,7 @@ public class DPBatchRunner {
                         }
                 ));
 
+        Map<String, Path> appToApkMap = new LinkedHashMap<>();
         for (String appName : appNamesToApksMap.keySet()) {
             List<Path> apks = appNamesToApksMap.get(appName);
             if (apks.isEmpty()) {
@@ -267,8 +364,27 @@ public class DPBatchRunner {
                     logger.warn(appName + ": multiple -debug.apk files found: " + apks + "\nPicking the first one.");
                 }
             }
-            Path apk = apks.get(0);
-            analyzeApp(appName, apk);
+            appToApkMap.put(appName, apks.get(0));
+        }
+
+        Path journalPath = journalFile != null ? journalFile : logDir.resolve("_batch_journal.txt");
+        try (BatchJournal journal = new BatchJournal(journalPath, resume)) {
+            this.journal = journal;
+            if (resume) {
+                Set<String> journaledApps = journal.readAppNames();
+                int appsToAnalyze = appToApkMap.size();
+                appToApkMap.keySet().removeAll(journaledApps);
+                logger.info("Resuming batch, apps already in journal: " + (appsToAnalyze - appToApkMap.size()));
+            }
+            analyzeApps(appToApkMap);
+            if (resultCache != null) {
+                logger.info("Apps reused from result cache: " + appsFromCache + " out of " + appToApkMap.size());
+            }
+
+            //all statistics are computed from the journal, including the entries of resumed batches
+            journal.replay(this::aggregateJournalEntry);
+        } finally {
+            this.journal = null;
         }
 
         switch (mode) {
@@ -285,22 +401,133 @@ public class DPBatchRunner {
         }
     }
 
-    private void analyzeApp(String appName, Path apk) throws IOException, JAXBException {
-        String droidPermClassPath = droidPermHomeDir + "/droid-perm.jar";
-        String androidClassPath = droidPermHomeDir + "/android-23-cr+util_io.zip";
-        Path logFile = Paths.get(logDir.toString(), appName + ".log");
-        Path errorFile = Paths.get(logDir.toString(), appName + ".error.log");
-        Path xmlOut = Paths.get(logDir.toString(), appName + ".out.xml");
+    /**
+     * Apps are analyzed in parallel if parallelism > 1, largest apk first to reduce tail latency. Results are always
+     * processed sequentially, in app order, so that logs and statistics are the same as for a sequential run.
+     */
+    private void analyzeApps(Map<String, Path> appToApkMap) throws IOException, JAXBException {
+        if (parallelism == 1) {
+            for (String appName : appToApkMap.keySet()) {
+                processAppRun(runApp(appName, appToApkMap.get(appName)));
+            }
+            return;
+        }
+
+        List<String> scheduleOrder = appToApkMap.keySet().stream()
+                .sorted(Comparator.comparingLong((String appName) -> fileSize(appToApkMap.get(appName))).reversed())
+                .collect(Collectors.toList());
+        //tasks submitted from outside the pool are taken in submission order, largest apk first
+        ExecutorService executor = Executors.newWorkStealingPool(parallelism);
+        try {
+            Map<String, Future<AppRun>> appToRunMap = new HashMap<>();
+            for (String appName : scheduleOrder) {
+                appToRunMap.put(appName, executor.submit(() -> runApp(appName, appToApkMap.get(appName))));
+            }
+            for (String appName : appToApkMap.keySet()) {
+                AppRun appRun;
+                try {
+                    appRun = appToRunMap.get(appName).get();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                    throw new RuntimeException(e.getCause());
+                }
+                processAppRun(appRun);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long fileSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Executes the analysis process for the app. If the analysis is killed for exceeding the time or memory limit and a
+     * retry call graph algorithm is specified, analysis is executed again with that algorithm.
+     * <p>
+     * Might be executed concurrently for multiple apps, so it should not modify the state of this object.
+     */
+    private AppRun runApp(String appName, Path apk) throws IOException {
+        String cacheKey = null;
+        if (resultCache != null) {
+            cacheKey = resultCache.computeKey(apk);
+            Path xmlOut = getXmlOut(appName);
+            if (resultCache.restore(appName, cacheKey, xmlOut)) {
+                return new AppRun(appName, xmlOut, RunStatus.OK, 0, 0, cgAlgo, null, true);
+            }
+        }
+
+        AppRun appRun = runAppAttempt(appName, apk, cgAlgo, false);
+        if (appRun.status.isKilled() && retryCgAlgo != null && !fastRun) {
+            logger.warn(appName + " " + appRun.status + ", retrying with cgalgo " + retryCgAlgo);
+            AppRun retryRun = runAppAttempt(appName, apk, retryCgAlgo, true);
+            //results of retries are not cached, they are computed with a different call graph algorithm
+            return new AppRun(appName, retryRun.xmlOut, retryRun.status, retryRun.exitCode,
+                    appRun.time + retryRun.time, retryRun.cgAlgo, appRun.status);
+        }
+        if (resultCache != null && appRun.status == RunStatus.OK) {
+            resultCache.store(appName, cacheKey, appRun.xmlOut);
+        }
+        return appRun;
+    }
+
+    /**
+     * Everything that affects the result of a DroidPerm run, except the apk.
+     */
+    private AppResultCache createResultCache() throws IOException {
+        List<Path> configFiles = new ArrayList<>();
+        configFiles.add(getDroidPermJar());
+        configFiles.add(getAndroidClassPath());
+        for (String permDefFile : permDefFiles.split(";")) {
+            configFiles.add(droidPermHomeDir.resolve(permDefFile));
+        }
+        configFiles.add(droidPermHomeDir.resolve(DroidPermMain.classpathExclusionListFile.toPath()));
+        List<String> configOptions = Arrays.asList(mode.name(), cgAlgo.name(),
+                Boolean.toString(fieldSensitivesEnabled), Boolean.toString(binaryOut), extraOpts);
+        Path cacheDir = resultCacheDir != null ? resultCacheDir : logDir.resolve("result-cache");
+        return new AppResultCache(cacheDir, configFiles, configOptions);
+    }
+
+    private Path getDroidPermJar() {
+        return droidPermHomeDir.resolve("droid-perm.jar");
+    }
+
+    private Path getAndroidClassPath() {
+        return droidPermHomeDir.resolve("android-23-cr+util_io.zip");
+    }
+
+    private Path getXmlOut(String appName) {
+        return Paths.get(logDir.toString(), appName + ".out" + (binaryOut ? JaxbBinaryCodec.BINARY_EXTENSION : ".xml"));
+    }
+
+    private AppRun runAppAttempt(String appName, Path apk, InfoflowConfiguration.CallgraphAlgorithm attemptCgAlgo,
+                                 boolean retry) throws IOException {
+        String droidPermClassPath = getDroidPermJar().toString();
+        String androidClassPath = getAndroidClassPath().toString();
+        String logPrefix = appName + (retry ? ".retry" : "");
+        Path logFile = Paths.get(logDir.toString(), logPrefix + ".log");
+        Path errorFile = Paths.get(logDir.toString(), logPrefix + ".error.log");
+        Path xmlOut = getXmlOut(appName);
 
         List<String> processBuilderArgs = new ArrayList<>();
         processBuilderArgs.add("java");
         if (vmArgs != null) {
             processBuilderArgs.addAll(Arrays.asList(vmArgs.split("\\s+")));
         }
+        if (totalHeapMb != null) {
+            processBuilderArgs.add("-Xmx" + totalHeapMb / parallelism + "m");
+        }
         processBuilderArgs.addAll(Arrays.asList(
                 "-jar", droidPermClassPath, apk.toAbsolutePath().toString(),
                 androidClassPath));
-        processBuilderArgs.addAll(Arrays.asList("--cgalgo", cgAlgo.name()));
+        processBuilderArgs.addAll(Arrays.asList("--cgalgo", attemptCgAlgo.name()));
 
         processBuilderArgs.addAll(Arrays.asList("--perm-def-files", permDefFiles));
         processBuilderArgs
@@ -333,35 +560,205 @@ public class DPBatchRunner {
         logger.info(appName + " ... ");
 
         long time = System.currentTimeMillis();
-        int exitCode;
-        if (!fastRun) {
-            Process process = processBuilder.start();
-            try {
-                exitCode = process.waitFor();
-            } catch (InterruptedException e) {
-                process.destroy();
-                throw new RuntimeException(e);
+        if (fastRun) {
+            int exitCode = Files.exists(xmlOut) ? 0 : 1;
+            return new AppRun(appName, xmlOut, exitCode == 0 ? RunStatus.OK : RunStatus.FAILED, exitCode,
+                    System.currentTimeMillis() - time, attemptCgAlgo, null);
+        }
+
+        Process process = processBuilder.start();
+        try {
+            RunStatus status = null;
+            while (status == null) {
+                if (process.waitFor(PROCESS_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    status = process.exitValue() == 0 ? RunStatus.OK : RunStatus.FAILED;
+                } else if (appTimeout != null && System.currentTimeMillis() - time > appTimeout * 1000L) {
+                    status = RunStatus.TIMEOUT;
+                } else if (maxRssMb != null && getRssMb(process) > maxRssMb) {
+                    status = RunStatus.MEMORY_LIMIT;
+                }
             }
-        } else {
-            exitCode = Files.exists(xmlOut) ? 0 : 1;
-        }
-
-        long newTime = System.currentTimeMillis();
-        logger.info(appName + " analyzed: " + (newTime - time) / 1E3 + " sec");
-        if (exitCode == 0) {
-            switch (mode) {
-                case DROID_PERM:
-                    droidPermModeFor(xmlOut, appName);
-                    break;
-                case COLLECT_ANNO:
-                    collectAnnotationsFor(xmlOut);
-                    break;
-                case COLLECT_SENSITIVES:
-                    collectSensitivesFor(xmlOut, appName);
-                    break;
+            if (status.isKilled()) {
+                process.destroyForcibly().waitFor();
             }
+            return new AppRun(appName, xmlOut, status, process.exitValue(), System.currentTimeMillis() - time,
+                    attemptCgAlgo, null);
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return resident set size of the process in MB, from /proc. 0 if it cannot be determined, e.g. not on Linux.
+     */
+    private static long getRssMb(Process process) {
+        long pid = getPid(process);
+        if (pid < 0) {
+            return 0;
+        }
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+                //format: "VmRSS:	  123456 kB"
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim()) / 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            //process already terminated, or no /proc
+        }
+        return 0;
+    }
+
+    /**
+     * Process.pid() is only available since Java 9. On Java 8 the pid is read from the private field of UNIXProcess.
+     *
+     * @return process id, or -1 if unknown.
+     */
+    private static long getPid(Process process) {
+        try {
+            return (Long) Process.class.getMethod("pid").invoke(process);
+        } catch (ReflectiveOperationException e) {
+            try {
+                Field pidField = process.getClass().getDeclaredField("pid");
+                pidField.setAccessible(true);
+                return pidField.getLong(process);
+            } catch (ReflectiveOperationException | RuntimeException e2) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Logs the results of the app and appends them to the journal. Aggregation is done later, from the journal.
+     */
+    private void processAppRun(AppRun appRun) throws IOException, JAXBException {
+        String appName = appRun.appName;
+        Path xmlOut = appRun.xmlOut;
+        BatchJournal.Entry entry = new BatchJournal.Entry(appName).put(STATUS, appRun.status);
+        if (appRun.cached) {
+            logger.info(appName + " analyzed: reused from result cache");
+            appsFromCache++;
         } else {
-            logger.error(appName + " analysis returned exit code " + exitCode);
+            logger.info(appName + " analyzed: " + appRun.time / 1E3 + " sec");
+        }
+        if (appRun.firstAttemptStatus != null) {
+            entry.put(RETRIED, appRun.firstAttemptStatus + ", retried with " + appRun.cgAlgo + ": " + appRun.status);
+        }
+        switch (appRun.status) {
+            case OK:
+                switch (mode) {
+                    case DROID_PERM:
+                        droidPermModeFor(xmlOut, appName, entry);
+                        break;
+                    case COLLECT_ANNO:
+                        //annotations are large, only the file is journaled
+                        entry.put(ANNO_FILE, xmlOut.toAbsolutePath());
+                        break;
+                    case COLLECT_SENSITIVES:
+                        collectSensitivesFor(xmlOut, appName, entry);
+                        break;
+                }
+                break;
+            case FAILED:
+                logger.error(appName + " analysis returned exit code " + appRun.exitCode);
+                break;
+            case TIMEOUT:
+                logger.error(appName + " analysis killed after timeout of " + appTimeout + " sec");
+                break;
+            case MEMORY_LIMIT:
+                logger.error(appName + " analysis killed after exceeding " + maxRssMb + " MB RSS");
+                break;
+        }
+        journal.append(entry);
+    }
+
+    /**
+     * Adds the results of one app from the journal to the batch statistics.
+     */
+    private void aggregateJournalEntry(BatchJournal.Entry entry) throws JAXBException {
+        String appName = entry.getAppName();
+        if (entry.get(RETRIED) != null) {
+            appsRetried.put(appName, entry.get(RETRIED));
+        }
+        switch (RunStatus.valueOf(entry.get(STATUS))) {
+            case OK:
+                switch (mode) {
+                    case DROID_PERM:
+                        totalReachedSensEdges += entry.getInt(REACHED_SENS_EDGES);
+                        totalCHAReachableSensEdges += entry.getInt(CHA_REACHABLE_SENS_EDGES);
+                        totalUnreachableSensEdges += entry.getInt(UNREACHABLE_SENS_EDGES);
+                        break;
+                    case COLLECT_ANNO:
+                        collectAnnotationsFor(Paths.get(entry.get(ANNO_FILE)));
+                        break;
+                    case COLLECT_SENSITIVES:
+                        aggregateSensitivesFor(appName, entry);
+                        break;
+                }
+                break;
+            case TIMEOUT:
+                appsTimedOut.add(appName);
+                break;
+            case MEMORY_LIMIT:
+                appsExceedingMemory.add(appName);
+                break;
+        }
+    }
+
+    private enum RunStatus {
+        OK, FAILED, TIMEOUT, MEMORY_LIMIT;
+
+        boolean isKilled() {
+            return this == TIMEOUT || this == MEMORY_LIMIT;
+        }
+    }
+
+    /**
+     * Outcome of the analysis process for one app.
+     */
+    private static class AppRun {
+        private final String appName;
+        private final Path xmlOut;
+        private final RunStatus status;
+        private final int exitCode;
+
+        /**
+         * Total time of all attempts.
+         */
+        private final long time;
+
+        /**
+         * Call graph algorithm of the last attempt.
+         */
+        private final InfoflowConfiguration.CallgraphAlgorithm cgAlgo;
+
+        /**
+         * Status of the first attempt if analysis was retried, null otherwise.
+         */
+        private final RunStatus firstAttemptStatus;
+
+        /**
+         * True if result was restored from the result cache.
+         */
+        private final boolean cached;
+
+        private AppRun(String appName, Path xmlOut, RunStatus status, int exitCode, long time,
+                       InfoflowConfiguration.CallgraphAlgorithm cgAlgo, RunStatus firstAttemptStatus) {
+            this(appName, xmlOut, status, exitCode, time, cgAlgo, firstAttemptStatus, false);
+        }
+
+        private AppRun(String appName, Path xmlOut, RunStatus status, int exitCode, long time,
+                       InfoflowConfiguration.CallgraphAlgorithm cgAlgo, RunStatus firstAttemptStatus,
+                       boolean cached) {
+            this.appName = appName;
+            this.xmlOut = xmlOut;
+            this.status = status;
+            this.exitCode = exitCode;
+            this.time = time;
+            this.cgAlgo = cgAlgo;
+            this.firstAttemptStatus = firstAttemptStatus;
+            this.cached = cached;
         }
     }
 
@@ -369,19 +766,19 @@ public class DPBatchRunner {
     int totalCHAReachableSensEdges;
     int totalUnreachableSensEdges;
 
-    private void droidPermModeFor(Path xmlOut, String appName) throws JAXBException {
+    private void droidPermModeFor(Path xmlOut, String appName, BatchJournal.Entry entry) throws JAXBException {
         JaxbCallbackList data = JaxbUtil.load(JaxbCallbackList.class, xmlOut.toFile());
         logger.info("\t reached sensitive edges: " + data.getNrReachedSensEdges());
-        totalReachedSensEdges += data.getNrReachedSensEdges();
+        entry.put(REACHED_SENS_EDGES, data.getNrReachedSensEdges());
+        entry.put(CHA_REACHABLE_SENS_EDGES, data.getNrCHAReachableSensEdges());
+        entry.put(UNREACHABLE_SENS_EDGES, data.getNrUnreachableSensEdges());
         if (data.getNrCHAReachableSensEdges() > 0) {
             logger.info(
                     "\t undetected CHA-reachable sensitive edges: " + data.getNrCHAReachableSensEdges());
-            totalCHAReachableSensEdges += data.getNrCHAReachableSensEdges();
         }
         if (data.getNrUnreachableSensEdges() > 0) {
             logger.info(
                     "\t unreachable sensitive edges: " + data.getNrUnreachableSensEdges());
-            totalUnreachableSensEdges += data.getNrUnreachableSensEdges();
         }
         if (!data.isCompileApi23Plus()) {
             logger.warn(appName + " : compileSdkVersion is < 23");
@@ -408,18 +805,20 @@ public class DPBatchRunner {
         }
     }
 
-    private void collectSensitivesFor(Path xmlOut, String appName) throws IOException, JAXBException {
+    private void collectSensitivesFor(Path xmlOut, String appName, BatchJournal.Entry entry)
+            throws IOException, JAXBException {
         SensitiveCollectorJaxbData data = JaxbUtil.load(SensitiveCollectorJaxbData.class, xmlOut.toFile());
         if (data.getTargetSdkVersion() != 23) {
             logger.warn(appName + " : targetSdkVersion = " + data.getTargetSdkVersion());
         }
 
-        computePermSpectra(appName, data);
+        Map<Set<PermUsage>, Set<String>> permSpectraMap = computePermSpectra(appName, data);
+        permSpectraMap.forEach((spectrum, permSet) -> entry.put(SPECTRUM_PREFIX + formatSpectrum(spectrum),
+                String.join(",", permSet)));
 
         boolean noUnsafeSpectra = unsafePermSpectra.stream()
-                .allMatch(spectrum -> appToPermSpectraTable.get(appName, spectrum) == null);
-        boolean appForEvaluation =
-                Sets.difference(appToPermSpectraTable.row(appName).keySet(), spectraForEvaluation).isEmpty();
+                .allMatch(spectrum -> permSpectraMap.get(spectrum) == null);
+        boolean appForEvaluation = Sets.difference(permSpectraMap.keySet(), spectraForEvaluation).isEmpty();
         boolean referredPermDefsOnlyMethod = data.getReferredPermDefs().stream()
                 .allMatch(permDef -> permDef.getTargetKind() == PermTargetKind.Method);
         boolean safeMethodSensOnly = !data.getReferredPermDefs().isEmpty()
@@ -431,21 +830,46 @@ public class DPBatchRunner {
                 && noUnsafeSpectra;
         boolean declaresNonStoragePermOnly = !data.getDeclaredDangerousPerms().isEmpty()
                 && Collections.disjoint(data.getAllDeclaredPerms(), SensitiveCollectorService.storagePerm);
-        if (safeMethodSensOnly) {
+        entry.put(SAFE_METHOD_SENS_ONLY, safeMethodSensOnly);
+        entry.put(SAFE_METHOD_OR_FIELD_SENS_ONLY, safeMethodOrFieldSensOnly);
+        entry.put(DECLARES_NON_STORAGE_PERM_ONLY, declaresNonStoragePermOnly);
+        entry.put(FOR_EVALUATION, appForEvaluation);
+    }
+
+    private void aggregateSensitivesFor(String appName, BatchJournal.Entry entry) {
+        for (Set<PermUsage> spectrum : permSpectra) {
+            String permSet = entry.get(SPECTRUM_PREFIX + formatSpectrum(spectrum));
+            if (permSet != null) {
+                appToPermSpectraTable.put(appName, spectrum, new LinkedHashSet<>(Arrays.asList(permSet.split(","))));
+            }
+        }
+        if (Boolean.parseBoolean(entry.get(SAFE_METHOD_SENS_ONLY))) {
             appsWithSafeMethodSensOnly.add(appName);
         }
-        if (safeMethodOrFieldSensOnly) {
+        if (Boolean.parseBoolean(entry.get(SAFE_METHOD_OR_FIELD_SENS_ONLY))) {
             appsWithSafeMethodOrFieldSensOnly.add(appName);
         }
-        if (declaresNonStoragePermOnly) {
+        if (Boolean.parseBoolean(entry.get(DECLARES_NON_STORAGE_PERM_ONLY))) {
             appsDeclaringNonStoragePermOnly.add(appName);
         }
-        if (appForEvaluation) {
+        if (Boolean.parseBoolean(entry.get(FOR_EVALUATION))) {
             appsForEvaluation.add(appName);
         }
     }
 
-    private void computePermSpectra(String appName, SensitiveCollectorJaxbData data) {
+    /**
+     * @return spectrum as a journal key, e.g. MANIFEST+CODE
+     */
+    private static String formatSpectrum(Set<PermUsage> spectrum) {
+        return spectrum.stream().map(PermUsage::name).collect(Collectors.joining("+"));
+    }
+
+    /**
+     * @return map from non-empty permission usage spectra of this app to their permissions, in the order of
+     * permSpectra.
+     */
+    private Map<Set<PermUsage>, Set<String>> computePermSpectra(String appName, SensitiveCollectorJaxbData data) {
+        Map<Set<PermUsage>, Set<String>> permSpectraMap = new LinkedHashMap<>();
         //Part 1. Compute initial table for this app.
         Map<PermUsage, Set<String>> permUsagesMap = new HashMap<>();
         permUsagesMap.put(PermUsage.MANIFEST, new LinkedHashSet<>(data.getDeclaredDangerousPerms()));
@@ -460,12 +884,12 @@ public class DPBatchRunner {
                     permSet.removeAll(permUsagesMap.get(usage));
                 }
             }
-            //First we put all spectra in the table. The next for will cleanup the empty ones.
-            appToPermSpectraTable.put(appName, spectrum, permSet);
+            //First we put all spectra in the map. The next for will cleanup the empty ones.
+            permSpectraMap.put(spectrum, permSet);
         }
 
         //Part 2, alter the table according to special rules for Sensitives. See DP-379 for details.
-        Set<String> normalSpectrumPerm = appToPermSpectraTable.get(appName, normalSpectrum);
+        Set<String> normalSpectrumPerm = permSpectraMap.get(normalSpectrum);
         Set<PermissionDef> unsatisfiedPermDefs = data.getReferredPermDefs().stream()
                 .filter(permDef -> Collections.disjoint(permDef.getPermissionNames(), normalSpectrumPerm))
                 .collect(Collectors.toSet());
@@ -477,7 +901,7 @@ public class DPBatchRunner {
         //For sensitive only spectra, retain only permissions which are among unsatisfied sensitives and ignore
         // the satisfied ones.
         Set<PermUsage> spectrumSensitive = ImmutableSet.of(PermUsage.SENSITIVE);
-        appToPermSpectraTable.get(appName, spectrumSensitive).removeAll(satisfiedOnlyPerm);
+        permSpectraMap.get(spectrumSensitive).removeAll(satisfiedOnlyPerm);
 
         //For spectrum MANIFEST+SENSITIVE, treat permissions as MANIFEST only if they are satisfied.
         //E.g. move them from MANIFEST+SENSITIVE to MANIFEST.
@@ -485,16 +909,15 @@ public class DPBatchRunner {
         Set<PermUsage> spectrumManifestAndSensitive = ImmutableSet.of(PermUsage.MANIFEST, PermUsage.SENSITIVE);
         Set<PermUsage> spectrumManifest = ImmutableSet.of(PermUsage.MANIFEST);
         Set<String> manifestAndSensButSatisfied = new LinkedHashSet<>(
-                Sets.intersection(appToPermSpectraTable.get(appName, spectrumManifestAndSensitive),
-                        satisfiedOnlyPerm));
-        appToPermSpectraTable.get(appName, spectrumManifestAndSensitive).removeAll(manifestAndSensButSatisfied);
-        appToPermSpectraTable.get(appName, spectrumManifest).addAll(manifestAndSensButSatisfied);
+                Sets.intersection(permSpectraMap.get(spectrumManifestAndSensitive), satisfiedOnlyPerm));
+        permSpectraMap.get(spectrumManifestAndSensitive).removeAll(manifestAndSensButSatisfied);
+        permSpectraMap.get(spectrumManifest).addAll(manifestAndSensButSatisfied);
 
-        //Part 3. Cleanup empty elements in the table and log results for the app.
+        //Part 3. Cleanup empty elements in the map and log results for the app.
         for (Set<PermUsage> spectrum : permSpectra) {
-            Set<String> permSet = appToPermSpectraTable.get(appName, spectrum);
+            Set<String> permSet = permSpectraMap.get(spectrum);
             if (permSet.isEmpty()) {
-                appToPermSpectraTable.remove(appName, spectrum);
+                permSpectraMap.remove(spectrum);
             } else {
                 String logString = appName + " : permissions with spectrum " + spectrum + " : " + permSet.size();
                 if (spectrum.equals(normalSpectrum)) {
@@ -504,6 +927,7 @@ public class DPBatchRunner {
                 }
             }
         }
+        return permSpectraMap;
     }
 
     /**
@@ -619,6 +1043,12 @@ public class DPBatchRunner {
         System.out.println("Total reached sensitive edges_ : " + totalReachedSensEdges);
         System.out.println("Total undetected CHA-reachable sensitive edges_ : " + totalCHAReachableSensEdges);
         System.out.println("Total unreachable sensitive edges_ : " + totalUnreachableSensEdges);
+        System.out.println("Apps timed out: " + appsTimedOut.size());
+        appsTimedOut.forEach(app -> System.out.println("\t" + app));
+        System.out.println("Apps exceeding memory limit: " + appsExceedingMemory.size());
+        appsExceedingMemory.forEach(app -> System.out.println("\t" + app));
+        System.out.println("Apps retried: " + appsRetried.size());
+        appsRetried.forEach((app, attempts) -> System.out.println("\t" + app + " : " + attempts));
     }
 
     /**
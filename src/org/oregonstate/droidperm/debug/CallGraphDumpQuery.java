@@ -0,0 +1,152 @@
+package org.oregonstate.droidperm.debug;
+
+import org.oregonstate.droidperm.debug.CallGraphDumpWriter.InvokePointsTo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Command line tool for dumps produced by DebugUtil.dumpPointsToAndCallGraph(). Dumps are read in streaming mode,
+ * except for diff, which keeps one line per record of each dump.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class CallGraphDumpQuery {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("print")) {
+            print(new File(args[1]));
+        } else if (args.length == 3 && args[0].equals("edges-out")) {
+            printEdgesOut(new File(args[1]), args[2]);
+        } else if (args.length == 4 && args[0].equals("points-to")) {
+            printPointsTo(new File(args[1]), args[2], args[3]);
+        } else if (args.length == 3 && args[0].equals("diff")) {
+            diff(new File(args[1]), new File(args[2]));
+        } else {
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: CallGraphDumpQuery <command>\n"
+                + "Commands:\n"
+                + "    print <dump>                            Print the dump as text.\n"
+                + "    edges-out <dump> <method sig>           Print the outgoing edges of a method.\n"
+                + "    points-to <dump> <method sig> <local>   Print points-to of a local variable.\n"
+                + "    diff <dump1> <dump2>                    Print edges and points-to that differ.\n");
+    }
+
+    /**
+     * Same layout as the former text dump.
+     */
+    private static void print(File file) throws IOException {
+        CallGraphDumpReader.read(file, new CallGraphDumpReader.Handler() {
+            @Override
+            public void staticField(String fieldSig, String pointsTo) {
+                System.out.println(fieldSig + " : " + pointsTo);
+            }
+
+            @Override
+            public void method(String methodSig) {
+                System.out.println("\n" + methodSig);
+            }
+
+            @Override
+            public void unit(String methodSig, String unit, InvokePointsTo invokePointsTo) {
+                String prefix = invokePointsTo == InvokePointsTo.NULL ? "NULL POINTS-TO: "
+                                : invokePointsTo == InvokePointsTo.EMPTY ? "EMPTY POINTS-TO: " : "";
+                System.out.println("\t" + prefix + unit);
+            }
+
+            @Override
+            public void edge(String methodSig, String unit, String tgtMethodSig) {
+                System.out.println("\t\t" + tgtMethodSig);
+            }
+
+            @Override
+            public void local(String methodSig, String localName, String pointsTo) {
+                System.out.println("\t" + localName + " : " + pointsTo);
+            }
+
+            @Override
+            public void thisField(String methodSig, String thisLocalName, String fieldSubsig, String pointsTo) {
+                System.out.println("\t\t" + thisLocalName + "." + fieldSubsig + " : " + pointsTo);
+            }
+        });
+    }
+
+    private static void printEdgesOut(File file, String methodSig) throws IOException {
+        CallGraphDumpReader.read(file, new CallGraphDumpReader.Handler() {
+            @Override
+            public void unit(String crntMethodSig, String unit, InvokePointsTo invokePointsTo) {
+                if (crntMethodSig.equals(methodSig)) {
+                    System.out.println(unit);
+                }
+            }
+
+            @Override
+            public void edge(String crntMethodSig, String unit, String tgtMethodSig) {
+                if (crntMethodSig.equals(methodSig)) {
+                    System.out.println("\t" + tgtMethodSig);
+                }
+            }
+        });
+    }
+
+    private static void printPointsTo(File file, String methodSig, String localName) throws IOException {
+        CallGraphDumpReader.read(file, new CallGraphDumpReader.Handler() {
+            @Override
+            public void local(String crntMethodSig, String crntLocalName, String pointsTo) {
+                if (crntMethodSig.equals(methodSig) && crntLocalName.equals(localName)) {
+                    System.out.println(pointsTo);
+                }
+            }
+
+            @Override
+            public void thisField(String crntMethodSig, String thisLocalName, String fieldSubsig, String pointsTo) {
+                if (crntMethodSig.equals(methodSig) && thisLocalName.equals(localName)) {
+                    System.out.println("\t" + localName + "." + fieldSubsig + " : " + pointsTo);
+                }
+            }
+        });
+    }
+
+    private static void diff(File file1, File file2) throws IOException {
+        Set<String> lines1 = readRecordLines(file1);
+        Set<String> lines2 = readRecordLines(file2);
+        lines1.stream().filter(line -> !lines2.contains(line)).forEach(line -> System.out.println("- " + line));
+        lines2.stream().filter(line -> !lines1.contains(line)).forEach(line -> System.out.println("+ " + line));
+    }
+
+    /**
+     * One self-contained line per edge and points-to record, so that records can be compared between dumps.
+     */
+    private static Set<String> readRecordLines(File file) throws IOException {
+        Set<String> lines = new TreeSet<>();
+        CallGraphDumpReader.read(file, new CallGraphDumpReader.Handler() {
+            @Override
+            public void staticField(String fieldSig, String pointsTo) {
+                lines.add(fieldSig + " : " + pointsTo);
+            }
+
+            @Override
+            public void edge(String methodSig, String unit, String tgtMethodSig) {
+                lines.add(methodSig + " / " + unit + " -> " + tgtMethodSig);
+            }
+
+            @Override
+            public void local(String methodSig, String localName, String pointsTo) {
+                lines.add(methodSig + " / " + localName + " : " + pointsTo);
+            }
+
+            @Override
+            public void thisField(String methodSig, String thisLocalName, String fieldSubsig, String pointsTo) {
+                lines.add(methodSig + " / " + thisLocalName + "." + fieldSubsig + " : " + pointsTo);
+            }
+        });
+        return lines;
+    }
+}
@@ -0,0 +1,108 @@
+package org.oregonstate.droidperm.debug;
+
+import org.oregonstate.droidperm.debug.CallGraphDumpWriter.InvokePointsTo;
+import org.oregonstate.droidperm.util.InternedDataInput;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.oregonstate.droidperm.debug.CallGraphDumpWriter.*;
+
+/**
+ * Streaming reader of dumps written by CallGraphDumpWriter. Records are passed to a Handler in file order, without
+ * keeping them in memory.
+ * <p>
+ * Points-to is passed to handlers as display text: the list of types, or "EXCEPTION: " followed by the exception.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class CallGraphDumpReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public interface Handler {
+
+        default void staticField(String fieldSig, String pointsTo) {
+        }
+
+        default void method(String methodSig) {
+        }
+
+        default void unit(String methodSig, String unit, InvokePointsTo invokePointsTo) {
+        }
+
+        default void edge(String methodSig, String unit, String tgtMethodSig) {
+        }
+
+        default void local(String methodSig, String localName, String pointsTo) {
+        }
+
+        default void thisField(String methodSig, String thisLocalName, String fieldSubsig, String pointsTo) {
+        }
+    }
+
+    public static void read(File file, Handler handler) throws IOException {
+        try (InternedDataInput in = new InternedDataInput(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a call graph dump: " + file);
+            }
+            int version = in.readVarInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported call graph dump version " + version + " in " + file);
+            }
+
+            String crntMethod = null;
+            String crntUnit = null;
+            for (int tag = readTag(in, file); tag != TAG_END; tag = readTag(in, file)) {
+                switch (tag) {
+                    case TAG_STATIC_FIELD:
+                        handler.staticField(in.readString(), readPointsTo(in));
+                        break;
+                    case TAG_METHOD:
+                        crntMethod = in.readString();
+                        crntUnit = null;
+                        handler.method(crntMethod);
+                        break;
+                    case TAG_UNIT:
+                        crntUnit = in.readString();
+                        handler.unit(crntMethod, crntUnit, in.readEnum(InvokePointsTo.class));
+                        break;
+                    case TAG_EDGE:
+                        handler.edge(crntMethod, crntUnit, in.readString());
+                        break;
+                    case TAG_LOCAL:
+                        handler.local(crntMethod, in.readString(), readPointsTo(in));
+                        break;
+                    case TAG_THIS_FIELD:
+                        handler.thisField(crntMethod, in.readString(), in.readString(), readPointsTo(in));
+                        break;
+                    default:
+                        throw new IOException("Invalid record tag " + tag + " in " + file);
+                }
+            }
+        }
+    }
+
+    private static int readTag(InternedDataInput in, File file) throws IOException {
+        try {
+            return in.readVarInt();
+        } catch (EOFException e) {
+            throw new IOException("Truncated call graph dump: " + file, e);
+        }
+    }
+
+    private static String readPointsTo(InternedDataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return "EXCEPTION: " + in.readString();
+        }
+        int size = in.readVarInt();
+        List<String> types = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            types.add(in.readString());
+        }
+        return types.toString();
+    }
+}
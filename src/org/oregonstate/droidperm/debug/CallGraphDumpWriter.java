@@ -0,0 +1,126 @@
+package org.oregonstate.droidperm.debug;
+
+import org.oregonstate.droidperm.util.InternedDataOutput;
+import soot.PointsToSet;
+import soot.Type;
+
+import java.io.*;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming writer of the binary call graph dump produced by DebugUtil.dumpPointsToAndCallGraph(). Records are written
+ * as soon as they are produced, nothing is kept in memory except the string table. To be read by CallGraphDumpReader.
+ * <p>
+ * Format: gzip of MAGIC, VERSION, then a sequence of records, each starting with a tag, ending with TAG_END. Strings
+ * are interned, see InternedDataOutput. Records:
+ * <ul>
+ * <li>TAG_STATIC_FIELD: field signature, points-to.</li>
+ * <li>TAG_METHOD: method signature. Following records up to the next TAG_METHOD belong to this method.</li>
+ * <li>TAG_UNIT: unit text, points-to status of the invoke target. Following TAG_EDGE records belong to this unit.</li>
+ * <li>TAG_EDGE: target method signature.</li>
+ * <li>TAG_LOCAL: local name, points-to.</li>
+ * <li>TAG_THIS_FIELD: local name of @this, field subsignature, points-to.</li>
+ * </ul>
+ * Points-to: boolean success, then sorted types if success, exception message otherwise.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class CallGraphDumpWriter implements Closeable {
+
+    static final int MAGIC = 0x44504344; //"DPCD"
+    static final int VERSION = 1;
+
+    static final int TAG_END = 0;
+    static final int TAG_STATIC_FIELD = 1;
+    static final int TAG_METHOD = 2;
+    static final int TAG_UNIT = 3;
+    static final int TAG_EDGE = 4;
+    static final int TAG_LOCAL = 5;
+    static final int TAG_THIS_FIELD = 6;
+
+    /**
+     * Points-to status of invoke targets, for TAG_UNIT.
+     */
+    enum InvokePointsTo {
+        NOT_VIRTUAL, OK, NULL, EMPTY
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InternedDataOutput out;
+
+    public CallGraphDumpWriter(File file) throws IOException {
+        out = new InternedDataOutput(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeVarInt(VERSION);
+    }
+
+    /**
+     * @param pointsTo null if computing points-to has thrown exception
+     */
+    public void writeStaticField(String fieldSig, PointsToSet pointsTo, Exception exception) throws IOException {
+        out.writeVarInt(TAG_STATIC_FIELD);
+        out.writeString(fieldSig);
+        writePointsTo(pointsTo, exception);
+    }
+
+    public void writeMethod(String methodSig) throws IOException {
+        out.writeVarInt(TAG_METHOD);
+        out.writeString(methodSig);
+    }
+
+    public void writeUnit(String unit, InvokePointsTo invokePointsTo) throws IOException {
+        out.writeVarInt(TAG_UNIT);
+        out.writeString(unit);
+        out.writeEnum(invokePointsTo);
+    }
+
+    public void writeEdge(String tgtMethodSig) throws IOException {
+        out.writeVarInt(TAG_EDGE);
+        out.writeString(tgtMethodSig);
+    }
+
+    public void writeLocal(String localName, PointsToSet pointsTo, Exception exception) throws IOException {
+        out.writeVarInt(TAG_LOCAL);
+        out.writeString(localName);
+        writePointsTo(pointsTo, exception);
+    }
+
+    public void writeThisField(String thisLocalName, String fieldSubsig, PointsToSet pointsTo, Exception exception)
+            throws IOException {
+        out.writeVarInt(TAG_THIS_FIELD);
+        out.writeString(thisLocalName);
+        out.writeString(fieldSubsig);
+        writePointsTo(pointsTo, exception);
+    }
+
+    private void writePointsTo(PointsToSet pointsTo, Exception exception) throws IOException {
+        out.writeBoolean(pointsTo != null);
+        if (pointsTo == null) {
+            out.writeString(String.valueOf(exception));
+            return;
+        }
+        //sorted, so that dumps of the same app can be compared
+        List<String> types = pointsTo.possibleTypes().stream().map(Type::toString).sorted()
+                .collect(Collectors.toList());
+        out.writeVarInt(types.size());
+        for (String type : types) {
+            out.writeString(type);
+        }
+    }
+
+    /**
+     * Marks the dump as complete. Dumps closed without finish() are reported as truncated by the reader.
+     */
+    public void finish() throws IOException {
+        out.writeVarInt(TAG_END);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
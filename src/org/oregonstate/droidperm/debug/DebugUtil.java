@@ -17,12 +17,10 @@ import soot.jimple.toolkits.callgraph.Edge;
 import soot.util.Chain;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 2/22/2016.
@@ -124,12 +122,14 @@ public class DebugUtil {
     }
 
     /**
-     * For each class, dump points-to of all fields that are of reference type. For Each method in the call graph, dump
-     * all local variables, all the fields in @this, and all the outgoing methods. Calls to class initializer (clinit)
-     * are not printed.
+     * For each class, dump points-to of all static fields that are of reference type. For Each method in the call
+     * graph, dump all local variables, all the fields in @this, and all the outgoing methods. Calls to class
+     * initializer (clinit) are not dumped.
      * <p>
      * For statements that have outgoing edges, an invocation, and empty or null points-to, we have a case of points-to
-     * inconsistency. For them a special message "EMPTY/NULL POINTS-TO" is printed.
+     * inconsistency. For them invoke points-to status is NULL or EMPTY.
+     * <p>
+     * Output is a binary dump, see CallGraphDumpWriter. Use CallGraphDumpQuery to print, query or compare dumps.
      *
      * @param file The output file.
      */
@@ -137,34 +137,31 @@ public class DebugUtil {
         logger.info("Dumping call graph to " + file);
         long time = System.currentTimeMillis();
 
-        try {
-            CallGraph cg = Scene.v().getCallGraph();
-            PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
-            Map<MethodOrMethodContext, Edge> srcMethodToEdge;
-            Field srcMethodToEdgeField = CallGraph.class.getDeclaredField("srcMethodToEdge");
-            srcMethodToEdgeField.setAccessible(true);
-            //noinspection unchecked
-            srcMethodToEdge = (Map<MethodOrMethodContext, Edge>) srcMethodToEdgeField.get(cg);
-            PrintWriter writer = new PrintWriter(new FileWriter(file));
-
-            dumpPointsTo(pta, srcMethodToEdge, writer);
-            writer.println("\n\n\n======================================");
-            dumpCallGraph(cg, pta, srcMethodToEdge, writer);
-            writer.close();
-
-        } catch (Exception e) {
+        CallGraph cg = Scene.v().getCallGraph();
+        PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
+        List<SootMethod> srcMethods = new ArrayList<>();
+        cg.sourceMethods().forEachRemaining(meth -> srcMethods.add(meth.method()));
+
+        try (CallGraphDumpWriter writer = new CallGraphDumpWriter(file)) {
+            dumpPointsTo(pta, srcMethods, writer);
+            for (SootMethod method : srcMethods) {
+                writer.writeMethod(method.getSignature());
+                dumpMethodEdges(method, cg, pta, writer);
+                dumpMethodPointsTo(method, pta, writer);
+            }
+            writer.finish();
+        } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
             logger.info("Call graph dumped in " + (System.currentTimeMillis() - time) / 1000.0 + " sec");
         }
     }
 
-    private static void dumpPointsTo(PointsToAnalysis pta,
-                                     Map<MethodOrMethodContext, Edge> srcMethodToEdge, PrintWriter writer) {
-        Stream<SootClass> classes = srcMethodToEdge.keySet().stream().map(meth -> meth.method().getDeclaringClass())
-                .distinct().sorted(Comparator.comparing(SootClass::getName));
-        classes.forEach(clazz -> {
-            writer.println("Points-to for " + clazz);
+    private static void dumpPointsTo(PointsToAnalysis pta, List<SootMethod> srcMethods,
+                                     CallGraphDumpWriter writer) throws IOException {
+        List<SootClass> classes = srcMethods.stream().map(SootMethod::getDeclaringClass)
+                .distinct().sorted(Comparator.comparing(SootClass::getName)).collect(Collectors.toList());
+        for (SootClass clazz : classes) {
             for (SootField field : clazz.getFields()) {
                 if (field.isStatic() && field.getType() instanceof RefLikeType) {
                     PointsToSet pointsTo = null;
@@ -174,86 +171,83 @@ public class DebugUtil {
                     } catch (Exception e) {
                         pte = e;
                     }
-                    writer.println("\t" + field + ": " + toDisplayString(pointsTo, pte));
+                    writer.writeStaticField(field.getSignature(), pointsTo, pte);
                 }
             }
-        });
-    }
-
-    private static void dumpCallGraph(CallGraph cg, PointsToAnalysis pta,
-                                      Map<MethodOrMethodContext, Edge> srcMethodToEdge, PrintWriter writer) {
-        for (MethodOrMethodContext method : srcMethodToEdge.keySet()) {
-            writer.println("From " + method);
-            dumpMethodEdges(method, cg, writer);
-            writer.println();
-            writer.println("\tPoints-to:");
-
-            dumpMethodPointsTo(method, pta, writer);
-            writer.println();
         }
     }
 
-    private static void dumpMethodEdges(MethodOrMethodContext method, CallGraph cg, PrintWriter writer) {
-        PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
-        for (Unit unit : method.method().getActiveBody().getUnits()) {
+    private static void dumpMethodEdges(SootMethod method, CallGraph cg, PointsToAnalysis pta,
+                                        CallGraphDumpWriter writer) throws IOException {
+        for (Unit unit : method.getActiveBody().getUnits()) {
             Iterator<Edge> edges = cg.edgesOutOf(unit);
-            if (edges.hasNext()) {
-                boolean unitPrinted = false;
-                while (edges.hasNext()) {
-                    Edge edge = edges.next();
-                    if (edge.tgt().getName().contains("<clinit>")) {
-                        continue;
-                    }
-
-                    if (!unitPrinted) {
-                        writer.println("\t" + unit);
-                        unitPrinted = true;
+            boolean unitDumped = false;
+            while (edges.hasNext()) {
+                Edge edge = edges.next();
+                if (edge.tgt().getName().contains("<clinit>")) {
+                    continue;
+                }
 
-                        //Check if this unit is an invocation with empty points-to. If yes, print.
-                        if (PointsToUtil.getVirtualInvokeIfPresent((Stmt) unit) != null) {
-                            PointsToSet pointsTo = PointsToUtil.getPointsToIfVirtualCall(unit, null, pta);
-                            if (pointsTo == null) {
-                                writer.println("\t\t\t\tNULL POINTS-TO!!!");
-                            } else if (pointsTo.possibleTypes().isEmpty()) {
-                                writer.println("\t\t\t\tEMPTY POINTS-TO!!!");
-                            }
-                        }
-                    }
-                    writer.println("\t\tTo " + edge.tgt());
+                if (!unitDumped) {
+                    writer.writeUnit(unit.toString(), getInvokePointsTo((Stmt) unit, pta));
+                    unitDumped = true;
                 }
+                writer.writeEdge(edge.tgt().getSignature());
             }
         }
     }
 
-    private static void dumpMethodPointsTo(MethodOrMethodContext method, PointsToAnalysis pta, PrintWriter writer) {
-        for (Unit unit : method.method().getActiveBody().getUnits()) {
+    /**
+     * Check if this unit is an invocation with empty points-to.
+     */
+    private static CallGraphDumpWriter.InvokePointsTo getInvokePointsTo(Stmt stmt, PointsToAnalysis pta) {
+        if (PointsToUtil.getVirtualInvokeIfPresent(stmt) == null) {
+            return CallGraphDumpWriter.InvokePointsTo.NOT_VIRTUAL;
+        }
+        PointsToSet pointsTo = PointsToUtil.getPointsToIfVirtualCall(stmt, null, pta);
+        if (pointsTo == null) {
+            return CallGraphDumpWriter.InvokePointsTo.NULL;
+        }
+        return pointsTo.possibleTypes().isEmpty()
+               ? CallGraphDumpWriter.InvokePointsTo.EMPTY : CallGraphDumpWriter.InvokePointsTo.OK;
+    }
+
+    /**
+     * Each local is dumped once, even if it is assigned multiple times. Context-insensitive points-to doesn't depend on
+     * the assignment.
+     */
+    private static void dumpMethodPointsTo(SootMethod method, PointsToAnalysis pta, CallGraphDumpWriter writer)
+            throws IOException {
+        Set<Local> dumpedLocals = new HashSet<>();
+        for (Unit unit : method.getActiveBody().getUnits()) {
             if (unit instanceof DefinitionStmt) {
                 DefinitionStmt assign = (DefinitionStmt) unit;
                 Value leftOp = assign.getLeftOp();
-                if (leftOp instanceof Local && leftOp.getType() instanceof RefLikeType) {
+                if (leftOp instanceof Local && leftOp.getType() instanceof RefLikeType
+                        && dumpedLocals.add((Local) leftOp)) {
+                    Local local = (Local) leftOp;
                     PointsToSet pointsTo = null;
                     Exception pte = null;
                     try {
-                        pointsTo = pta.reachingObjects((Local) leftOp);
+                        pointsTo = pta.reachingObjects(local);
                     } catch (Exception e) {
                         pte = e;
                     }
-                    writer.println("\t\t" + assign + ": " + toDisplayString(pointsTo, pte));
+                    writer.writeLocal(local.getName(), pointsTo, pte);
 
                     //Dump instance fields of @this
                     if (assign.getRightOp() instanceof ThisRef) {
-                        SootClass thisClass = ((RefType) leftOp.getType()).getSootClass();
+                        SootClass thisClass = ((RefType) local.getType()).getSootClass();
                         for (SootField field : thisClass.getFields()) {
                             if (!field.isStatic() && field.getType() instanceof RefLikeType) {
                                 PointsToSet fieldPointsTo = null;
                                 Exception fpte = null;
                                 try {
-                                    fieldPointsTo = pta.reachingObjects((Local) leftOp, field);
+                                    fieldPointsTo = pta.reachingObjects(local, field);
                                 } catch (Exception e) {
                                     fpte = e;
                                 }
-                                writer.println("\t\t\tthis.<" + field.getSubSignature()
-                                        + ">: " + toDisplayString(fieldPointsTo, fpte));
+                                writer.writeThisField(local.getName(), field.getSubSignature(), fieldPointsTo, fpte);
                             }
                         }
                     }
@@ -262,10 +256,6 @@ public class DebugUtil {
         }
     }
 
-    private static String toDisplayString(PointsToSet pointsTo, Exception e) {
-        return "" + (pointsTo != null ? pointsTo.possibleTypes() : "EXCEPTION: " + e);
-    }
-
     public static void logClassesWithCallbacks(Set<MethodOrMethodContext> uiCallbacks) {
         Set<SootClass> callbackClasses = getCallbackClasses(uiCallbacks);
         System.out.println("\nTotal classes with callbacks: " + callbackClasses.size() + "\n"
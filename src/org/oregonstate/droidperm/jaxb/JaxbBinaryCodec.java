@@ -0,0 +1,296 @@
+package org.oregonstate.droidperm.jaxb;
+
+import org.oregonstate.droidperm.perm.miner.jaxb_out.*;
+import org.oregonstate.droidperm.sens.SensitiveCollectorJaxbData;
+import org.oregonstate.droidperm.util.InternedDataInput;
+import org.oregonstate.droidperm.util.InternedDataOutput;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary alternative to the JAXB xml format, for the data classes produced by DroidPerm: JaxbCallbackList,
+ * SensitiveCollectorJaxbData and PermissionDefList. Strings are interned into a table that is built while writing,
+ * see InternedDataOutput. Used by JaxbUtil for files with BINARY_EXTENSION.
+ * <p>
+ * Format: MAGIC, format VERSION, data class name, then the data. Lists and maps are prefixed by size + 1, 0 meaning
+ * null. Field order follows the declaration order of the JAXB classes. Any change to it requires a new VERSION.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class JaxbBinaryCodec {
+
+    public static final String BINARY_EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x44504231; //"DPB1"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static boolean isBinaryFile(File file) {
+        return file.getName().endsWith(BINARY_EXTENSION);
+    }
+
+    public static boolean supports(Class<?> dataClass) {
+        return dataClass == JaxbCallbackList.class || dataClass == SensitiveCollectorJaxbData.class
+                || dataClass == PermissionDefList.class;
+    }
+
+    public static <T> void save(T data, Class<T> dataClass, File file) throws IOException {
+        checkSupported(dataClass);
+        Path parentPath = file.toPath().getParent();
+        if (parentPath != null) {
+            Files.createDirectories(parentPath);
+        }
+        try (InternedDataOutput out = new InternedDataOutput(
+                new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeVarInt(VERSION);
+            out.writeString(dataClass.getName());
+            if (dataClass == JaxbCallbackList.class) {
+                writeCallbackList(out, (JaxbCallbackList) data);
+            } else if (dataClass == SensitiveCollectorJaxbData.class) {
+                writeSensitiveCollectorData(out, (SensitiveCollectorJaxbData) data);
+            } else {
+                writePermissionDefList(out, (PermissionDefList) data);
+            }
+        }
+    }
+
+    public static <T> T load(Class<T> dataClass, File file) throws IOException {
+        checkSupported(dataClass);
+        try (InternedDataInput in = new InternedDataInput(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a DroidPerm binary file: " + file);
+            }
+            int version = in.readVarInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary format version " + version + " in " + file);
+            }
+            String className = in.readString();
+            if (!dataClass.getName().equals(className)) {
+                throw new IOException("File " + file + " contains " + className + ", expected " + dataClass.getName());
+            }
+            Object data;
+            if (dataClass == JaxbCallbackList.class) {
+                data = readCallbackList(in);
+            } else if (dataClass == SensitiveCollectorJaxbData.class) {
+                data = readSensitiveCollectorData(in);
+            } else {
+                data = readPermissionDefList(in);
+            }
+            return dataClass.cast(data);
+        }
+    }
+
+    private static void checkSupported(Class<?> dataClass) {
+        if (!supports(dataClass)) {
+            throw new IllegalArgumentException("Binary format not supported for " + dataClass.getName());
+        }
+    }
+
+    private static void writeCallbackList(InternedDataOutput out, JaxbCallbackList data) throws IOException {
+        writeList(out, data.getCallbacks(), JaxbBinaryCodec::writeCallback);
+        writeList(out, data.getUndetectedCHADangerousPermDefs(), JaxbBinaryCodec::writePermissionDef);
+        writeList(out, data.getUnreachableDangerousPermDefs(), JaxbBinaryCodec::writePermissionDef);
+        out.writeBoolean(data.isCompileApi23Plus());
+        out.writeVarInt(data.getTargetSdkVersion());
+        out.writeVarInt(data.getNrReachedSensEdges());
+        out.writeVarInt(data.getNrCHAReachableSensEdges());
+        out.writeVarInt(data.getNrUnreachableSensEdges());
+    }
+
+    private static JaxbCallbackList readCallbackList(InternedDataInput in) throws IOException {
+        JaxbCallbackList data = new JaxbCallbackList();
+        data.setCallbacks(readList(in, JaxbBinaryCodec::readCallback));
+        data.setUndetectedCHADangerousPermDefs(readList(in, JaxbBinaryCodec::readPermissionDef));
+        data.setUnreachableDangerousPermDefs(readList(in, JaxbBinaryCodec::readPermissionDef));
+        data.setCompileApi23Plus(in.readBoolean());
+        data.setTargetSdkVersion(in.readVarInt());
+        data.setNrReachedSensEdges(in.readVarInt());
+        data.setNrCHAReachableSensEdges(in.readVarInt());
+        data.setNrUnreachableSensEdges(in.readVarInt());
+        return data;
+    }
+
+    private static void writeCallback(InternedDataOutput out, JaxbCallback callback) throws IOException {
+        out.writeString(callback.getDeclaringClass());
+        out.writeString(callback.getSignature());
+        writeList(out, callback.getStmts(), JaxbBinaryCodec::writeStmt);
+        Map<String, CheckerUsageStatus> checkerStatusMap = callback.checkerStatusMap;
+        out.writeVarInt(checkerStatusMap == null ? 0 : checkerStatusMap.size() + 1);
+        if (checkerStatusMap != null) {
+            for (Map.Entry<String, CheckerUsageStatus> entry : checkerStatusMap.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeEnum(entry.getValue());
+            }
+        }
+    }
+
+    private static JaxbCallback readCallback(InternedDataInput in) throws IOException {
+        JaxbCallback callback = new JaxbCallback();
+        callback.setDeclaringClass(in.readString());
+        callback.setSignature(in.readString());
+        callback.setStmts(readList(in, JaxbBinaryCodec::readStmt));
+        int mapSize = in.readVarInt() - 1;
+        Map<String, CheckerUsageStatus> checkerStatusMap = null;
+        if (mapSize >= 0) {
+            checkerStatusMap = new LinkedHashMap<>();
+            for (int i = 0; i < mapSize; i++) {
+                checkerStatusMap.put(in.readString(), in.readEnum(CheckerUsageStatus.class));
+            }
+        }
+        callback.setCheckerStatusMap(checkerStatusMap);
+        return callback;
+    }
+
+    private static void writeStmt(InternedDataOutput out, JaxbStmt stmt) throws IOException {
+        out.writeString(stmt.getCallClass());
+        out.writeString(stmt.getCallSignature());
+        out.writeString(stmt.stmt);
+        out.writeVarInt(stmt.getLine());
+        Map<String, Boolean> permissionStatusMap = stmt.getPermissionStatusMap();
+        out.writeVarInt(permissionStatusMap == null ? 0 : permissionStatusMap.size() + 1);
+        if (permissionStatusMap != null) {
+            for (Map.Entry<String, Boolean> entry : permissionStatusMap.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeBoolean(entry.getValue());
+            }
+        }
+    }
+
+    private static JaxbStmt readStmt(InternedDataInput in) throws IOException {
+        JaxbStmt stmt = new JaxbStmt();
+        stmt.setCallClass(in.readString());
+        stmt.setCallSignature(in.readString());
+        stmt.stmt = in.readString();
+        stmt.setLine(in.readVarInt());
+        int mapSize = in.readVarInt() - 1;
+        Map<String, Boolean> permissionStatusMap = null;
+        if (mapSize >= 0) {
+            permissionStatusMap = new LinkedHashMap<>();
+            for (int i = 0; i < mapSize; i++) {
+                permissionStatusMap.put(in.readString(), in.readBoolean());
+            }
+        }
+        stmt.setPermissionStatusMap(permissionStatusMap);
+        return stmt;
+    }
+
+    private static void writeSensitiveCollectorData(InternedDataOutput out, SensitiveCollectorJaxbData data)
+            throws IOException {
+        writeList(out, data.getAllDeclaredPerms(), InternedDataOutput::writeString);
+        writeList(out, data.getDeclaredDangerousPerms(), InternedDataOutput::writeString);
+        writeList(out, data.getReferredDangerousPerms(), InternedDataOutput::writeString);
+        writeList(out, data.getPermsWithSensitives(), InternedDataOutput::writeString);
+        writeList(out, data.getReferredPermDefs(), JaxbBinaryCodec::writePermissionDef);
+        out.writeVarInt(data.getTargetSdkVersion());
+    }
+
+    private static SensitiveCollectorJaxbData readSensitiveCollectorData(InternedDataInput in) throws IOException {
+        List<String> allDeclaredPerms = readList(in, InternedDataInput::readString);
+        List<String> declaredDangerousPerms = readList(in, InternedDataInput::readString);
+        List<String> referredDangerousPerms = readList(in, InternedDataInput::readString);
+        List<String> permsWithSensitives = readList(in, InternedDataInput::readString);
+        List<PermissionDef> referredPermDefs = readList(in, JaxbBinaryCodec::readPermissionDef);
+        int targetSdkVersion = in.readVarInt();
+        return new SensitiveCollectorJaxbData(allDeclaredPerms, declaredDangerousPerms, referredDangerousPerms,
+                permsWithSensitives, referredPermDefs, targetSdkVersion);
+    }
+
+    private static void writePermissionDefList(InternedDataOutput out, PermissionDefList data) throws IOException {
+        writeList(out, data.getPermissionDefs(), JaxbBinaryCodec::writePermissionDef);
+        writeList(out, data.getCheckerDefs(), JaxbBinaryCodec::writeMethodBasedDef);
+        writeList(out, data.getRequesterDefs(), JaxbBinaryCodec::writeMethodBasedDef);
+        writeList(out, data.getParametricSensDefs(), (out1, def) -> {
+            out1.writeString(def.getClassName());
+            out1.writeString(def.getTarget());
+        });
+    }
+
+    private static PermissionDefList readPermissionDefList(InternedDataInput in) throws IOException {
+        List<PermissionDef> permissionDefs = readList(in, JaxbBinaryCodec::readPermissionDef);
+        List<MethodBasedDef> checkerDefs = readList(in, JaxbBinaryCodec::readMethodBasedDef);
+        List<MethodBasedDef> requesterDefs = readList(in, JaxbBinaryCodec::readMethodBasedDef);
+        List<ParametricSensDef> parametricSensDefs =
+                readList(in, in1 -> new ParametricSensDef(in1.readString(), in1.readString()));
+        PermissionDefList data = new PermissionDefList(permissionDefs, checkerDefs, parametricSensDefs);
+        if (requesterDefs != null) {
+            data.getRequesterDefs().addAll(requesterDefs);
+        }
+        return data;
+    }
+
+    private static void writeMethodBasedDef(InternedDataOutput out, MethodBasedDef def) throws IOException {
+        out.writeString(def.getClassName());
+        out.writeString(def.getTarget());
+    }
+
+    private static MethodBasedDef readMethodBasedDef(InternedDataInput in) throws IOException {
+        return new MethodBasedDef(in.readString(), in.readString());
+    }
+
+    private static void writePermissionDef(InternedDataOutput out, PermissionDef def) throws IOException {
+        out.writeString(def.getClassName());
+        out.writeString(def.getTarget());
+        out.writeEnum(def.getTargetKind());
+        out.writeEnum(def.getPermissionRel());
+        writeList(out, def.getPermissions(), (out1, perm) -> {
+            out1.writeString(perm.getName());
+            out1.writeEnum(perm.getOperationKind());
+        });
+        out.writeString(def.getComment());
+        //0 = null, 1 = false, 2 = true
+        out.writeVarInt(def.isConditional() == null ? 0 : def.isConditional() ? 2 : 1);
+    }
+
+    private static PermissionDef readPermissionDef(InternedDataInput in) throws IOException {
+        String className = in.readString();
+        String target = in.readString();
+        PermTargetKind targetKind = in.readEnum(PermTargetKind.class);
+        PermissionRel permissionRel = in.readEnum(PermissionRel.class);
+        List<Permission> permissions =
+                readList(in, in1 -> new Permission(in1.readString(), in1.readEnum(OperationKind.class)));
+        String comment = in.readString();
+        int conditional = in.readVarInt();
+        return new PermissionDef(className, target, targetKind, permissionRel, permissions, comment,
+                conditional == 0 ? null : conditional == 2);
+    }
+
+    private static <T> void writeList(InternedDataOutput out, List<T> list, ElementWriter<T> elementWriter)
+            throws IOException {
+        if (list == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(list.size() + 1);
+        for (T element : list) {
+            elementWriter.write(out, element);
+        }
+    }
+
+    private static <T> List<T> readList(InternedDataInput in, ElementReader<T> elementReader) throws IOException {
+        int size = in.readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(elementReader.read(in));
+        }
+        return list;
+    }
+
+    private interface ElementWriter<T> {
+        void write(InternedDataOutput out, T value) throws IOException;
+    }
+
+    private interface ElementReader<T> {
+        T read(InternedDataInput in) throws IOException;
+    }
+}
@@ -0,0 +1,132 @@
+package org.oregonstate.droidperm.jaxb;
+
+import org.oregonstate.droidperm.perm.miner.jaxb_out.PermissionDef;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Streaming writer for the xml format of JaxbCallbackList. Callbacks are marshalled and flushed one by one, as soon as
+ * they are produced, so the full list is never held in memory. The other JaxbCallbackList elements are written by
+ * finish(), at the end of the document, in the same order as JAXB does.
+ * <p>
+ * The document is written to file + ".partial" and renamed to file by finish(). A run killed midway leaves the
+ * callbacks written so far in the partial file, while file never holds an incomplete document.
+ * <p>
+ * Output is equivalent to JaxbUtil.save() for JaxbCallbackList, except for indentation.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class JaxbCallbackListWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private final Path file;
+    private final Path partialFile;
+    private final OutputStream outputStream;
+    private final XMLStreamWriter xmlWriter;
+    private final Marshaller marshaller;
+    private boolean closed;
+
+    /**
+     * An existing file is deleted, so a failed run doesn't leave the results of a previous run behind.
+     */
+    public JaxbCallbackListWriter(File file) throws IOException, JAXBException, XMLStreamException {
+        this.file = file.toPath();
+        partialFile = Paths.get(file.getPath() + PARTIAL_SUFFIX);
+        Path parentPath = this.file.getParent();
+        if (parentPath != null) {
+            Files.createDirectories(parentPath);
+        }
+        Files.deleteIfExists(this.file);
+        marshaller = JAXBContext.newInstance(JaxbCallback.class, PermissionDef.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+
+        outputStream = new BufferedOutputStream(new FileOutputStream(partialFile.toFile()), BUFFER_SIZE);
+        xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, "UTF-8");
+        xmlWriter.writeStartDocument("UTF-8", "1.0");
+        xmlWriter.writeCharacters("\n");
+        xmlWriter.writeStartElement("callbacks");
+    }
+
+    public void writeCallback(JaxbCallback callback) throws JAXBException, XMLStreamException {
+        xmlWriter.writeCharacters("\n    ");
+        marshaller.marshal(callback, xmlWriter);
+        xmlWriter.flush();
+    }
+
+    /**
+     * Writes all elements of data except callbacks, closes the document and renames the partial file to file.
+     */
+    public void finish(JaxbCallbackList data) throws JAXBException, XMLStreamException, IOException {
+        writePermDefs("undetectedCHADangerousPermDefs", data.getUndetectedCHADangerousPermDefs());
+        writePermDefs("unreachableDangerousPermDefs", data.getUnreachableDangerousPermDefs());
+        writeSimpleElement("compileApi23Plus", data.isCompileApi23Plus());
+        writeSimpleElement("targetSdkVersion", data.getTargetSdkVersion());
+        writeSimpleElement("nrReachedSensEdges", data.getNrReachedSensEdges());
+        writeSimpleElement("nrCHAReachableSensEdges", data.getNrCHAReachableSensEdges());
+        writeSimpleElement("nrUnreachableSensEdges", data.getNrUnreachableSensEdges());
+        xmlWriter.writeCharacters("\n");
+        xmlWriter.writeEndElement();
+        xmlWriter.writeEndDocument();
+        close();
+        Files.move(partialFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Same as @XmlElementWrapper + @XmlElement(name = "permDef"): no wrapper for null lists.
+     */
+    private void writePermDefs(String wrapperName, List<PermissionDef> permDefs)
+            throws JAXBException, XMLStreamException {
+        if (permDefs == null) {
+            return;
+        }
+        xmlWriter.writeCharacters("\n    ");
+        xmlWriter.writeStartElement(wrapperName);
+        for (PermissionDef permDef : permDefs) {
+            xmlWriter.writeCharacters("\n        ");
+            marshaller.marshal(new JAXBElement<>(new QName("permDef"), PermissionDef.class, permDef), xmlWriter);
+        }
+        xmlWriter.writeCharacters("\n    ");
+        xmlWriter.writeEndElement();
+    }
+
+    private void writeSimpleElement(String name, Object value) throws XMLStreamException {
+        xmlWriter.writeCharacters("\n    ");
+        xmlWriter.writeStartElement(name);
+        xmlWriter.writeCharacters(String.valueOf(value));
+        xmlWriter.writeEndElement();
+    }
+
+    /**
+     * Called without finish(), leaves the partial file in place.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            xmlWriter.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
@@ -19,8 +19,11 @@ public class JaxbStmt {
     private String callClass;
     private String callSignature;
 
+    /**
+     * Package-private for JaxbBinaryCodec.
+     */
     @XmlAttribute
-    private String stmt;
+    String stmt;
 
     private int line;
 
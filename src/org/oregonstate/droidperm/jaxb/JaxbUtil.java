@@ -22,9 +22,8 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -34,11 +33,16 @@ import java.util.stream.IntStream;
 public class JaxbUtil {
 
     /**
+     * Each callback is passed to callbackConsumer as soon as it is built, and is not retained.
+     * <p>
      * todo: There's a discrepancy between the way permission checks are matched with sensitives here and in
      * printCoveredCallbacks(). There ANY ONE perm per sensitive should be checked for the whole sensitive to be
      * checked. Here ALL the perms for a statement should be checked for the statement to be checked.
+     *
+     * @return data without callbacks
      */
-    public static JaxbCallbackList buildJaxbData(MethodPermDetector detector, CheckerAnalysis checkerAnalysis) {
+    public static JaxbCallbackList buildJaxbData(MethodPermDetector detector, CheckerAnalysis checkerAnalysis,
+                                                 Consumer<JaxbCallback> callbackConsumer) {
         CallGraph cg = Scene.v().getCallGraph();
         //Map from callback to lvl 2 map describing checked permissions in this callback.
         //Lvl2 map: from checked permissions to usage status of this check: used, unused or possibly used through ICC.
@@ -65,7 +69,7 @@ public class JaxbUtil {
                     jaxbCallback.addStmt(jaxbStmt);
                 }
             }
-            jaxbCallbackList.addCallback(jaxbCallback);
+            callbackConsumer.accept(jaxbCallback);
         }
         jaxbCallbackList.setNrReachedSensEdges(detector.getSensitivePathsHolder().getReachedSensEdges().size());
 
@@ -81,7 +85,14 @@ public class JaxbUtil {
         return jaxbCallbackList;
     }
 
+    /**
+     * Files with extension JaxbBinaryCodec.BINARY_EXTENSION are saved in binary format, all others in xml.
+     */
     public static <T> void save(T data, Class<T> dataClass, File file) throws JAXBException, IOException {
+        if (JaxbBinaryCodec.isBinaryFile(file)) {
+            JaxbBinaryCodec.save(data, dataClass, file);
+            return;
+        }
         Marshaller jaxbMarshaller = JAXBContext.newInstance(dataClass).createMarshaller();
         // output pretty printed
         jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
@@ -92,7 +103,17 @@ public class JaxbUtil {
         jaxbMarshaller.marshal(data, file);
     }
 
+    /**
+     * Files with extension JaxbBinaryCodec.BINARY_EXTENSION are loaded from binary format, all others from xml.
+     */
     public static <T> T load(Class<T> dataClass, File file) throws JAXBException {
+        if (JaxbBinaryCodec.isBinaryFile(file)) {
+            try {
+                return JaxbBinaryCodec.load(dataClass, file);
+            } catch (IOException e) {
+                throw new JAXBException("Error loading " + file, e);
+            }
+        }
         Unmarshaller unmarshaller = JAXBContext.newInstance(dataClass).createUnmarshaller();
         //noinspection unchecked
         return (T) unmarshaller.unmarshal(file);
@@ -104,6 +125,13 @@ public class JaxbUtil {
         return (T) unmarshaller.unmarshal(url);
     }
 
+    /**
+     * Converts between xml and binary formats, according to file extensions. Used to export binary files to xml.
+     */
+    public static <T> void convert(Class<T> dataClass, File from, File to) throws JAXBException, IOException {
+        save(load(dataClass, from), dataClass, to);
+    }
+
     public static <T> void print(T data, Class<T> dataClass) throws JAXBException {
         Marshaller jaxbMarshaller = JAXBContext.newInstance(dataClass).createMarshaller();
         jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
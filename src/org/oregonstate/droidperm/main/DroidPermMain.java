@@ -15,15 +15,19 @@ import org.oregonstate.droidperm.perm.AnnoPermissionDefUtil;
 import org.oregonstate.droidperm.perm.FieldSensitiveDef;
 import org.oregonstate.droidperm.perm.IPermissionDefProvider;
 import org.oregonstate.droidperm.perm.PermDefProviderFactory;
+import org.oregonstate.droidperm.scene.CallGraphSnapshot;
 import org.oregonstate.droidperm.scene.ClasspathFilter;
 import org.oregonstate.droidperm.scene.ClasspathFilterService;
 import org.oregonstate.droidperm.scene.ScenePermissionDefService;
 import org.oregonstate.droidperm.scene.SceneUtil;
 import org.oregonstate.droidperm.sens.SensitiveCollectorService;
+import org.oregonstate.droidperm.traversal.CallbackTypeUtil;
 import org.oregonstate.droidperm.traversal.MethodPermDetector;
+import org.oregonstate.droidperm.util.HierarchyUtil;
 import org.oregonstate.droidperm.util.PrintUtil;
 import org.oregonstate.droidperm.util.UnitComparator;
 import org.xmlpull.v1.XmlPullParserException;
+import soot.G;
 import soot.Main;
 import soot.Scene;
 import soot.SourceLocator;
@@ -73,7 +77,10 @@ public class DroidPermMain {
      */
     private static String flowDroidXmlOut;
 
-    private static String additionalClasspath = "";
+    /**
+     * Option "--additionalCP". Part of the Soot classpath, also for initSootStandalone().
+     */
+    public static String additionalClasspath = "";
     private static List<File> permDefFiles = buildPermDefFiles(
             "config/checker-param-sens-def.xml;config/perm-def-API-23.xml;config/perm-def-play-services.xml;"
                     + "config/javadoc-perm-def-API-23.xml;config/perm-def-manual.xml");
@@ -86,6 +93,16 @@ public class DroidPermMain {
     private static InfoflowAndroidConfiguration config = new InfoflowAndroidConfiguration();
     private static IIPCManager ipcManager = null;
     private static File callGraphDumpFile;
+
+    /**
+     * If not null, call graph and points-to produced by FlowDroid are saved here, see CallGraphSnapshot.
+     */
+    private static File saveCGSnapshotFile;
+
+    /**
+     * If not null, FlowDroid is not run. Call graph and points-to are loaded from this snapshot instead.
+     */
+    private static File loadCGSnapshotFile;
     private static boolean printAnnoPermDef;
 
     /**
@@ -101,6 +118,23 @@ public class DroidPermMain {
     public static boolean fieldSensitivesEnabled = true;
     public static boolean augmentCallGraph = true;
 
+    /**
+     * Number of threads used to traverse callback outflows. Value 1 means sequential traversal.
+     */
+    public static int traversalThreads = 1;
+
+    /**
+     * Number of threads used to scan method bodies of the whole scene. Value 1 means sequential scan.
+     */
+    public static int sceneScanThreads = 1;
+
+    /**
+     * If true, args[0] is a job queue directory and DroidPerm runs as a daemon. See runDaemon().
+     */
+    private static boolean daemonMode;
+    private static final String DAEMON_STOP_FILE = "stop";
+    private static final long DAEMON_POLL_INTERVAL_MS = 1000;
+
     static {
         // DroidPerm default config options
         //during code ellimination sometimes a new class is added which deleted the PointsToAnalysis.
@@ -132,6 +166,11 @@ public class DroidPermMain {
         //run the analysis
         cleanupTempDir();
 
+        if (daemonMode) {
+            runDaemon(inputFileOrDir, androidJarOrSdkDir);
+            return;
+        }
+
         List<File> apkFiles = gatherApkFiles(inputFileOrDir);
 
         for (final File apkFile : apkFiles) {
@@ -349,6 +388,12 @@ public class DroidPermMain {
             } else if (args[i].equalsIgnoreCase("--CALL-GRAPH-DUMP-FILE")) {
                 callGraphDumpFile = new File(args[i + 1]);
                 i += 2;
+            } else if (args[i].equalsIgnoreCase("--SAVE-CG-SNAPSHOT")) {
+                saveCGSnapshotFile = new File(args[i + 1]);
+                i += 2;
+            } else if (args[i].equalsIgnoreCase("--LOAD-CG-SNAPSHOT")) {
+                loadCGSnapshotFile = new File(args[i + 1]);
+                i += 2;
             } else if (args[i].equalsIgnoreCase("--PRINT-ANNO-PERM-DEF")) {
                 printAnnoPermDef = true;
                 i++;
@@ -364,6 +409,18 @@ public class DroidPermMain {
             } else if (args[i].equalsIgnoreCase("--field-Sensitives-Enabled")) {
                 fieldSensitivesEnabled = Boolean.parseBoolean(args[i + 1]);
                 i += 2;
+            } else if (args[i].equalsIgnoreCase("--TRAVERSAL-THREADS")) {
+                traversalThreads = Integer.parseInt(args[i + 1]);
+                i += 2;
+            } else if (args[i].equalsIgnoreCase("--SCENE-SCAN-THREADS")) {
+                sceneScanThreads = Integer.parseInt(args[i + 1]);
+                i += 2;
+            } else if (args[i].equalsIgnoreCase("--DAEMON")) {
+                daemonMode = true;
+                i++;
+            } else if (args[i].equalsIgnoreCase("--DISPATCH-CACHE-SIZE")) {
+                HierarchyUtil.configureDispatchCache(Integer.parseInt(args[i + 1]));
+                i += 2;
             } else {
                 throw new IllegalArgumentException("Invalid option: " + args[i]);
             }
@@ -385,6 +442,25 @@ public class DroidPermMain {
         if (permDefFiles.isEmpty()) {
             throw new ParameterException("Empty list of permission definition files.");
         }
+        if (traversalThreads < 1) {
+            throw new ParameterException("traversal-threads must be at least 1");
+        }
+        if (sceneScanThreads < 1) {
+            throw new ParameterException("scene-scan-threads must be at least 1");
+        }
+        if (saveCGSnapshotFile != null && loadCGSnapshotFile != null) {
+            throw new ParameterException("save-cg-snapshot and load-cg-snapshot both specified");
+        }
+        if (daemonMode && (timeout > 0 || sysTimeout > 0)) {
+            //on timeout the analysis thread keeps running and modifying Soot state, while the next job starts
+            throw new ParameterException("timeout and sysTimeout are not supported in daemon mode");
+        }
+        if (daemonMode && (saveCGSnapshotFile != null || loadCGSnapshotFile != null)) {
+            throw new ParameterException("save-cg-snapshot and load-cg-snapshot are not supported in daemon mode");
+        }
+        if (loadCGSnapshotFile != null && !loadCGSnapshotFile.exists()) {
+            throw new ParameterException("Call graph snapshot not found: " + loadCGSnapshotFile);
+        }
 
         List<File> missingPermFiles = permDefFiles.stream().filter(file -> !file.exists()).collect(Collectors.toList());
         if (!missingPermFiles.isEmpty()) {
@@ -425,13 +501,16 @@ public class DroidPermMain {
         System.out.println("\t--ADDITIONALCP Additional classpath for API code, besides android.jar");
         System.out.println("\t--PERM-DEF-FILES A list of txt or xml files containing permission definitions. "
                 + "Multiple files are separated by \";\" Default is config/perm-def-default.txt");
+        System.out.println("\t\tFiles with extension .dpdef are compiled definitions, produced by PermDefCompiler. "
+                + "They load faster.");
         System.out.println(
                 "\t--USE-ANNO-PERM-DEF Use permission definitions provided as @RequiresPermission annotations.");
         System.out.println("\t--TAINT-ANALYSIS-ENABLED true/false.");
         System.out.println("\t--CODE-ELIMINATION-MODE Various options for irrelevant code elimination.");
         System.out.println("\t--TXT-OUT DroidPerm output file: txt format.");
         System.out.println("\t--XML-OUT DroidPerm output file: xml format.");
-        System.out.println("\t--CALL-GRAPH-DUMP-FILE <file>: Dump the call graph to a file.");
+        System.out.println("\t--CALL-GRAPH-DUMP-FILE <file>: Dump the call graph to a binary file, "
+                + "read by CallGraphDumpQuery.");
         System.out.println("\t--PRINT-ANNO-PERM-DEF: Print available permission def annoations.");
         System.out.println("\t--COLLECT-PERM-ANNO-MODE: Only collect permission annotations. Do not run DroidPerm."
                 + " Option --xml-out if specified will be the file where annotations are stored.");
@@ -439,6 +518,20 @@ public class DroidPermMain {
         System.out.println("\t--AUGMENT-CALL-GRAPH true/false: Augment call graph with safe edges for method calls "
                 + "that have no outgoing edges");
         System.out.println("\t--field-Sensitives-Enabled true/false: Whether field sensitives analysis is enabled");
+        System.out.println("\t--TRAVERSAL-THREADS n: Number of threads used to traverse callback outflows. "
+                + "Default is 1. Output is the same regardless of the number of threads.");
+        System.out.println("\t--SCENE-SCAN-THREADS n: Number of threads used to scan method bodies for sensitives, "
+                + "checkers and constants. Default is 1. Output is the same regardless of the number of threads.");
+        System.out.println("\t--SAVE-CG-SNAPSHOT file: Save call graph and points-to produced by FlowDroid to file, "
+                + "before call graph augmentation. Not supported with --DAEMON.");
+        System.out.println("\t--LOAD-CG-SNAPSHOT file: Don't run FlowDroid, load call graph and points-to from a "
+                + "snapshot saved for the same apk and android classpath. Not supported with --DAEMON.");
+        System.out.println("\t--DAEMON: Run as a daemon. Argument [0] is a job queue directory. Each job is a "
+                + "properties file *.job with keys: apk, txt-out, xml-out. Daemon stops when file \""
+                + DAEMON_STOP_FILE + "\" appears in the queue directory. Not supported with --timeout and "
+                + "--systimeout.");
+        System.out.println("\t--DISPATCH-CACHE-SIZE n: Maximum number of methods with cached abstract dispatch. "
+                + "Default is " + HierarchyUtil.DEFAULT_DISPATCH_CACHE_SIZE + ".");
         System.out.println();
         System.out.println("Supported callgraph algorithms: AUTO, CHA, RTA, VTA, SPARK, GEOM");
         System.out.println("Supported layout mode algorithms: NONE, PWD, ALL");
@@ -514,13 +607,113 @@ public class DroidPermMain {
         return Stream.of(fileListArg.split(";")).map(name -> new File(name.trim())).collect(Collectors.toList());
     }
 
+    /**
+     * Daemon mode: apk jobs are read from a queue directory, so that multiple apps are analyzed in the same JVM.
+     * Each job is a properties file with extension .job and keys: apk (required), txt-out, xml-out. Missing output
+     * keys fall back to command line options.
+     * <p>
+     * A job is claimed by renaming it to *.job.running, so multiple daemons may share a queue. When finished it is
+     * renamed to *.job.done or *.job.failed. The daemon stops when a file named "stop" is found in the queue directory.
+     */
+    private static void runDaemon(File queueDir, String androidJarOrSdkDir) throws InterruptedException {
+        if (!queueDir.isDirectory()) {
+            throw new ParameterException("Job queue directory not found: " + queueDir);
+        }
+        System.out.println("DroidPerm daemon started, job queue: " + queueDir);
+        File stopFile = new File(queueDir, DAEMON_STOP_FILE);
+        while (!stopFile.exists()) {
+            File[] jobFiles = queueDir.listFiles((dir, name) -> name.endsWith(".job"));
+            if (jobFiles == null || jobFiles.length == 0) {
+                Thread.sleep(DAEMON_POLL_INTERVAL_MS);
+                continue;
+            }
+            Arrays.sort(jobFiles);
+            for (File jobFile : jobFiles) {
+                File runningFile = new File(jobFile.getPath() + ".running");
+                if (stopFile.exists() || !jobFile.renameTo(runningFile)) {
+                    continue; //claimed by another daemon
+                }
+                boolean success;
+                try {
+                    success = runDaemonJob(runningFile, androidJarOrSdkDir);
+                } catch (OutOfMemoryError e) {
+                    //heap and Soot state can't be trusted after OOM
+                    markJobFinished(jobFile, runningFile, false);
+                    System.err.println("DroidPerm daemon stopped: out of memory.");
+                    System.exit(1);
+                    return;
+                }
+                markJobFinished(jobFile, runningFile, success);
+            }
+        }
+        System.out.println("DroidPerm daemon stopped.");
+    }
+
+    private static void markJobFinished(File jobFile, File runningFile, boolean success) {
+        File resultFile = new File(jobFile.getPath() + (success ? ".done" : ".failed"));
+        if (!runningFile.renameTo(resultFile)) {
+            System.err.println("Failed to rename " + runningFile + " to " + resultFile);
+        }
+    }
+
+    /**
+     * Errors like StackOverflowError, common in Soot, fail the job. OutOfMemoryError is rethrown, to stop the daemon.
+     *
+     * @return true if the job was successful
+     */
+    private static boolean runDaemonJob(File jobFile, String androidJarOrSdkDir) {
+        File defaultTxtOut = txtOut;
+        File defaultXmlOut = xmlOut;
+        try (Reader reader = new FileReader(jobFile)) {
+            Properties job = new Properties();
+            job.load(reader);
+            String apk = job.getProperty("apk");
+            if (apk == null) {
+                throw new IllegalArgumentException("Job has no apk: " + jobFile);
+            }
+            txtOut = job.containsKey("txt-out") ? new File(job.getProperty("txt-out")) : defaultTxtOut;
+            xmlOut = job.containsKey("xml-out") ? new File(job.getProperty("xml-out")) : defaultXmlOut;
+
+            long startTime = System.currentTimeMillis();
+            runAnalysisForFile(androidJarOrSdkDir, new File(apk));
+            System.out.println("Job " + jobFile + " done in " + (System.currentTimeMillis() - startTime) / 1E3
+                    + " seconds");
+            return true;
+        } catch (Throwable e) {
+            System.err.println("Job " + jobFile + " failed: " + e);
+            e.printStackTrace();
+            if (e instanceof OutOfMemoryError) {
+                throw (OutOfMemoryError) e;
+            }
+            return false;
+        } finally {
+            txtOut = defaultTxtOut;
+            xmlOut = defaultXmlOut;
+        }
+    }
+
+    /**
+     * Soot and DroidPerm static state is bound to the Scene of the previous apk. Must be reset before analyzing the
+     * next one.
+     */
+    public static void resetSceneState() {
+        G.reset();
+        SceneUtil.reset();
+        HierarchyUtil.reset();
+        CallbackTypeUtil.reset();
+    }
+
     private static void runAnalysisForFile(String androidJarORSdkDir, File apkFile) throws Exception {
         initTime = System.nanoTime();
+        resetSceneState();
 
         // Directory handling
         System.out.println("Analyzing file " + apkFile + "...");
 
-        permissionDefProvider = PermDefProviderFactory.create(permDefFiles, useAnnoPermDef);
+        //Permission definitions don't depend on the apk, they are parsed once per JVM.
+        if (permissionDefProvider == null) {
+            permissionDefProvider = PermDefProviderFactory.create(permDefFiles, useAnnoPermDef);
+        }
         if (collectPermAnnoMode) {
             initSootStandalone(androidJarORSdkDir, apkFile);
             AnnoPermissionDefUtil.collectPermAnno(xmlOut, true);
@@ -536,14 +729,19 @@ public class DroidPermMain {
             return;
         }
 
-        // Run FlowDroid
-        System.gc();
-        if (timeout > 0) {
-            runAnalysisTimeout(apkFile.getAbsolutePath(), androidJarORSdkDir);
-        } else if (sysTimeout > 0) {
-            runAnalysisSysTimeout(apkFile.getAbsolutePath(), androidJarORSdkDir);
+        if (loadCGSnapshotFile != null) {
+            initSootStandalone(androidJarORSdkDir, apkFile);
+            CallGraphSnapshot.load(loadCGSnapshotFile, apkFile);
         } else {
-            runAnalysis(apkFile.getAbsolutePath(), androidJarORSdkDir);
+            // Run FlowDroid
+            System.gc();
+            if (timeout > 0) {
+                runAnalysisTimeout(apkFile.getAbsolutePath(), androidJarORSdkDir);
+            } else if (sysTimeout > 0) {
+                runAnalysisSysTimeout(apkFile.getAbsolutePath(), androidJarORSdkDir);
+            } else {
+                runAnalysis(apkFile.getAbsolutePath(), androidJarORSdkDir);
+            }
         }
 
         //Run DroidPerm
@@ -551,6 +749,10 @@ public class DroidPermMain {
         //Prevents PointsToAnalysis from being released. Also required for HierarchyUtil.
         Options.v().set_allow_phantom_refs(false);
 
+        if (saveCGSnapshotFile != null) {
+            CallGraphSnapshot.save(saveCGSnapshotFile, apkFile);
+        }
+
         if (printAnnoPermDef) {
             AnnoPermissionDefUtil.printAnnoPermDefs(false);
         }
@@ -570,7 +772,7 @@ public class DroidPermMain {
      * Load classes that are not loaded by default in Scene but are required to resolve correctly field and method
      * sensitives.
      */
-    private static void loadSceneDependencies() {
+    private static void loadSceneDependencies(IPermissionDefProvider permissionDefProvider) {
         Set<FieldSensitiveDef> fieldSensitiveDefs = permissionDefProvider.getFieldSensitiveDefs();
         Scene scene = Scene.v();
         fieldSensitiveDefs.stream()
@@ -611,7 +813,7 @@ public class DroidPermMain {
                 options.setPhaseOption("cg.spark", "geom-dump-verbose:sootOutput/geom-dump-verbose");
 
                 //options.set_verbose(true);//for low-level debugging of Soot.
-                loadSceneDependencies();
+                loadSceneDependencies(permissionDefProvider);
             });
 
             setupApplication.setTaintWrapper(createTaintWrapper());
@@ -781,6 +983,14 @@ public class DroidPermMain {
     }
 
     public static void initSootStandalone(String androidJarORSdkDir, File apkFile) {
+        initSootStandalone(androidJarORSdkDir, apkFile, permissionDefProvider);
+    }
+
+    /**
+     * @param permissionDefProvider field sensitives of these definitions are loaded into the Scene.
+     */
+    public static void initSootStandalone(String androidJarORSdkDir, File apkFile,
+                                          IPermissionDefProvider permissionDefProvider) {
         String apkFilePath = apkFile.getAbsolutePath();
 
         Options.v().set_allow_phantom_refs(true);
@@ -792,7 +1002,7 @@ public class DroidPermMain {
         Options.v().set_whole_program(true); //required by HierarchyUtil.
         Main.v().autoSetOptions();
 
-        loadSceneDependencies();
+        loadSceneDependencies(permissionDefProvider);
         Scene.v().loadNecessaryClasses();
 
         //Critically important. Otherwise unused permission def classes will be loaded as phantom
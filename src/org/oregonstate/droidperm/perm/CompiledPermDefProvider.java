@@ -0,0 +1,151 @@
+package org.oregonstate.droidperm.perm;
+
+import org.oregonstate.droidperm.main.DroidPermMain;
+import org.oregonstate.droidperm.util.InternedDataInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.jimple.infoflow.android.data.AndroidMethod;
+import soot.jimple.infoflow.data.SootMethodAndClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Loads permission definitions compiled by PermDefCompiler. The file is memory-mapped and decoded in one pass, without
+ * the xml parsing and signature regexes of the source providers.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+class CompiledPermDefProvider implements IPermissionDefProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledPermDefProvider.class);
+
+    private final Set<SootMethodAndClass> permCheckerDefs;
+    private final Set<SootMethodAndClass> permRequesterDefs;
+    private final Set<AndroidMethod> methodSensitiveDefs;
+    private final Set<FieldSensitiveDef> fieldSensitiveDefs;
+    private final Set<SootMethodAndClass> parametricSensDefs;
+
+    public CompiledPermDefProvider(File file) throws IOException {
+        long startTime = System.currentTimeMillis();
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        InternedDataInput in = new InternedDataInput(new ByteBufferInputStream(buffer));
+        if (in.readInt() != PermDefCompiler.MAGIC) {
+            throw new IOException("Not a compiled permission definition file: " + file);
+        }
+        int version = in.readVarInt();
+        if (version != PermDefCompiler.VERSION) {
+            throw new IOException("Unsupported compiled permission definition version " + version + " in " + file);
+        }
+        int nrSourceFiles = in.readVarInt();
+        for (int i = 0; i < nrSourceFiles; i++) {
+            File sourceFile = new File(in.readString());
+            long lastModified = Long.parseLong(in.readString());
+            if (sourceFile.exists() && sourceFile.lastModified() != lastModified) {
+                logger.warn(file + " might be outdated, source modified after compilation: " + sourceFile);
+            }
+        }
+
+        permCheckerDefs = readMethods(in);
+        permRequesterDefs = readMethods(in);
+        int nrMethodSens = in.readVarInt();
+        methodSensitiveDefs = new LinkedHashSet<>(nrMethodSens * 2);
+        for (int i = 0; i < nrMethodSens; i++) {
+            String className = in.readString();
+            String methodName = in.readString();
+            String returnType = in.readString();
+            List<String> parameters = readStrings(in);
+            Set<String> permissions = new LinkedHashSet<>(readStrings(in));
+            methodSensitiveDefs.add(new AndroidMethod(methodName, parameters, returnType, className, permissions));
+        }
+        int nrFieldSens = in.readVarInt();
+        fieldSensitiveDefs = new LinkedHashSet<>(nrFieldSens * 2);
+        for (int i = 0; i < nrFieldSens; i++) {
+            String className = in.readString();
+            String name = in.readString();
+            fieldSensitiveDefs.add(new FieldSensitiveDef(className, name, new LinkedHashSet<>(readStrings(in))));
+        }
+        parametricSensDefs = readMethods(in);
+        logger.info("Loaded compiled permission definitions from " + file + " in "
+                + (System.currentTimeMillis() - startTime) / 1E3 + " sec");
+    }
+
+    private static Set<SootMethodAndClass> readMethods(InternedDataInput in) throws IOException {
+        int size = in.readVarInt();
+        Set<SootMethodAndClass> methods = new LinkedHashSet<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String className = in.readString();
+            String methodName = in.readString();
+            String returnType = in.readString();
+            methods.add(new SootMethodAndClass(methodName, className, returnType, readStrings(in)));
+        }
+        return methods;
+    }
+
+    private static List<String> readStrings(InternedDataInput in) throws IOException {
+        int size = in.readVarInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(in.readString());
+        }
+        return strings;
+    }
+
+    @Override
+    public Set<SootMethodAndClass> getPermCheckerDefs() {
+        return permCheckerDefs;
+    }
+
+    @Override
+    public Set<SootMethodAndClass> getPermRequesterDefs() {
+        return permRequesterDefs;
+    }
+
+    @Override
+    public Set<AndroidMethod> getMethodSensitiveDefs() {
+        return methodSensitiveDefs;
+    }
+
+    @Override
+    public Set<FieldSensitiveDef> getFieldSensitiveDefs() {
+        return DroidPermMain.fieldSensitivesEnabled ? fieldSensitiveDefs : Collections.emptySet();
+    }
+
+    @Override
+    public Set<SootMethodAndClass> getParametricSensDefs() {
+        return parametricSensDefs;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.oregonstate.droidperm.perm;
+
+import org.oregonstate.droidperm.util.InternedDataOutput;
+import soot.jimple.infoflow.android.data.AndroidMethod;
+import soot.jimple.infoflow.data.SootMethodAndClass;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles a list of permission definition files, xml or txt, into a single binary file with extension
+ * COMPILED_EXTENSION, loaded by CompiledPermDefProvider. Definitions are merged and checked for duplicates the same
+ * way as at analysis time, through AggregatePermDefProvider.
+ * <p>
+ * Format: MAGIC, VERSION, source files with their last modified time, then the 5 definition sets, in the order of
+ * IPermissionDefProvider methods. Strings are interned, see InternedDataOutput.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class PermDefCompiler {
+
+    public static final String COMPILED_EXTENSION = "dpdef";
+
+    static final int MAGIC = 0x44504446; //"DPDF"
+    static final int VERSION = 1;
+
+    /**
+     * arg 0: destination file, should have extension COMPILED_EXTENSION
+     * <p>
+     * arg 1: source permission definition files, separated by ";"
+     */
+    public static void main(String[] args) throws IOException {
+        File destFile = new File(args[0]);
+        List<File> sourceFiles = Arrays.stream(args[1].split(";")).map(File::new).collect(Collectors.toList());
+        long startTime = System.currentTimeMillis();
+        compile(sourceFiles, destFile);
+        System.out.println("Compiled " + sourceFiles.size() + " permission definition files into " + destFile + " in "
+                + (System.currentTimeMillis() - startTime) / 1E3 + " sec");
+    }
+
+    public static void compile(List<File> sourceFiles, File destFile) throws IOException {
+        IPermissionDefProvider provider = PermDefProviderFactory.create(sourceFiles, false);
+        try (InternedDataOutput out = new InternedDataOutput(
+                new BufferedOutputStream(new FileOutputStream(destFile)))) {
+            out.writeInt(MAGIC);
+            out.writeVarInt(VERSION);
+            out.writeVarInt(sourceFiles.size());
+            for (File sourceFile : sourceFiles) {
+                out.writeString(sourceFile.getPath());
+                out.writeString(Long.toString(sourceFile.lastModified()));
+            }
+
+            writeMethods(out, provider.getPermCheckerDefs());
+            writeMethods(out, provider.getPermRequesterDefs());
+            out.writeVarInt(provider.getMethodSensitiveDefs().size());
+            for (AndroidMethod method : provider.getMethodSensitiveDefs()) {
+                writeMethod(out, method);
+                writeStrings(out, method.getPermissions());
+            }
+            out.writeVarInt(provider.getFieldSensitiveDefs().size());
+            for (FieldSensitiveDef field : provider.getFieldSensitiveDefs()) {
+                out.writeString(field.getClassName());
+                out.writeString(field.getName());
+                writeStrings(out, field.getPermissions());
+            }
+            writeMethods(out, provider.getParametricSensDefs());
+        }
+    }
+
+    private static void writeMethods(InternedDataOutput out, Collection<SootMethodAndClass> methods)
+            throws IOException {
+        out.writeVarInt(methods.size());
+        for (SootMethodAndClass method : methods) {
+            writeMethod(out, method);
+        }
+    }
+
+    private static void writeMethod(InternedDataOutput out, SootMethodAndClass method) throws IOException {
+        out.writeString(method.getClassName());
+        out.writeString(method.getMethodName());
+        out.writeString(method.getReturnType());
+        writeStrings(out, method.getParameters());
+    }
+
+    private static void writeStrings(InternedDataOutput out, Collection<String> strings) throws IOException {
+        out.writeVarInt(strings.size());
+        for (String string : strings) {
+            out.writeString(string);
+        }
+    }
+}
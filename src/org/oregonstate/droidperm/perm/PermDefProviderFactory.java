@@ -18,6 +18,8 @@ public class PermDefProviderFactory {
                 return new TxtPermissionDefProvider(file);
             } else if ("xml".equals(ext)) {
                 return new XMLPermissionDefProvider(file);
+            } else if (PermDefCompiler.COMPILED_EXTENSION.equals(ext)) {
+                return new CompiledPermDefProvider(file);
             } else {
                 throw new RuntimeException("Unsupported extension for: " + file);
             }
@@ -0,0 +1,504 @@
+package org.oregonstate.droidperm.scene;
+
+import com.google.common.collect.Lists;
+import org.oregonstate.droidperm.util.CallGraphUtil;
+import org.oregonstate.droidperm.util.InternedDataInput;
+import org.oregonstate.droidperm.util.InternedDataOutput;
+import org.oregonstate.droidperm.util.PointsToUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.*;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.parser.JimpleAST;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.jimple.toolkits.callgraph.Kind;
+import soot.options.Options;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Snapshot of the analysis state produced by FlowDroid, to rerun DroidPerm on the same apk without FlowDroid, e.g. with
+ * different permission definitions or classpath exclusion list. Contains:
+ * <ul>
+ * <li>Classes of entry points (dummy main), as Jimple.</li>
+ * <li>Call graph edges produced by FlowDroid, before CallGraphUtil.augmentCGWithSafeEdges(). Augmentation depends on
+ * the classpath filter, so it runs after load.</li>
+ * <li>Points-to results for all queries DroidPerm might perform, see SnapshotPointsToAnalysis. Includes the call sites
+ * augmentation might add, for any classpath filter.</li>
+ * </ul>
+ * The snapshot has to be loaded into a Scene built from the same apk, with the same classpath, e.g. through
+ * DroidPermMain.initSootStandalone(). This is checked through a hash of the apk and classpath files stored in the
+ * header. Methods are referred by signature, statements by index in the method body. Each statement is checked
+ * against a hash of its Jimple text, mismatched edges and points-to entries are dropped and reported.
+ * <p>
+ * Format: MAGIC, VERSION, input hash, entry point classes, entry points, edges, points-to entries. Strings are
+ * interned, see InternedDataOutput.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class CallGraphSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallGraphSnapshot.class);
+
+    private static final int MAGIC = 0x44504347; //"DPCG"
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String ANY_SUBTYPE_PREFIX = "Any_subtype_of_";
+
+    /**
+     * Saves the call graph, entry points and points-to of the current Scene.
+     *
+     * @param apkFile apk the Scene was built from.
+     */
+    public static void save(File file, File apkFile) throws IOException {
+        logger.info("DP: Saving call graph snapshot to " + file);
+        long startTime = System.currentTimeMillis();
+        Scene scene = Scene.v();
+        CallGraph cg = scene.getCallGraph();
+        PointsToAnalysis pta = scene.getPointsToAnalysis();
+        BodyIndex bodyIndex = new BodyIndex();
+
+        try (InternedDataOutput out = new InternedDataOutput(
+                new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeVarInt(VERSION);
+            out.writeString(computeInputHash(apkFile));
+
+            List<SootMethod> entryPoints = scene.getEntryPoints();
+            Set<SootClass> entryPointClasses = new LinkedHashSet<>();
+            entryPoints.forEach(meth -> entryPointClasses.add(meth.getDeclaringClass()));
+            out.writeVarInt(entryPointClasses.size());
+            for (SootClass sootClass : entryPointClasses) {
+                out.writeString(sootClass.getName());
+                out.writeString(toJimple(sootClass));
+            }
+            out.writeVarInt(entryPoints.size());
+            for (SootMethod entryPoint : entryPoints) {
+                out.writeString(entryPoint.getSignature());
+            }
+
+            List<Edge> edges = Lists.newArrayList(cg.iterator());
+            out.writeVarInt(edges.size());
+            Set<SootMethod> srcMethods = new LinkedHashSet<>();
+            for (Edge edge : edges) {
+                out.writeString(edge.src().getSignature());
+                bodyIndex.write(out, edge.src(), edge.srcStmt());
+                out.writeString(edge.tgt().getSignature());
+                out.writeString(edge.kind().toString());
+                srcMethods.add(edge.src());
+            }
+
+            //Call graph augmentation runs after load, with the classpath filter of that run. Points-to is computed for
+            //the call graph with all safe edges, a superset of the edges augmentation might add for any filter.
+            List<Edge> safeEdges = CallGraphUtil.computeSafeEdges(cg, null);
+            CallGraph augmentedCG = new CallGraph();
+            edges.forEach(edge -> augmentedCG.addEdge(new Edge(edge.src(), edge.srcStmt(), edge.tgt(), edge.kind())));
+            safeEdges.forEach(augmentedCG::addEdge);
+            safeEdges.forEach(edge -> srcMethods.add(edge.src()));
+            List<PointsToEntry> pointsToEntries = computePointsToEntries(srcMethods, augmentedCG, pta);
+            out.writeVarInt(pointsToEntries.size());
+            for (PointsToEntry entry : pointsToEntries) {
+                entry.write(out, bodyIndex);
+            }
+            logger.info("DP: Call graph snapshot saved: " + edges.size() + " edges, " + pointsToEntries.size()
+                    + " points-to entries, time " + (System.currentTimeMillis() - startTime) / 1E3 + " sec");
+        }
+    }
+
+    /**
+     * Restores entry points, call graph and points-to into the current Scene. Classes of the apk have to be loaded.
+     *
+     * @param apkFile apk the Scene was built from.
+     * @throws IOException if the snapshot was saved for a different apk or classpath.
+     */
+    public static void load(File file, File apkFile) throws IOException {
+        logger.info("DP: Loading call graph snapshot from " + file);
+        long startTime = System.currentTimeMillis();
+        Scene scene = Scene.v();
+        BodyIndex bodyIndex = new BodyIndex();
+
+        try (InternedDataInput in = new InternedDataInput(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a call graph snapshot: " + file);
+            }
+            int version = in.readVarInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported call graph snapshot version " + version + " in " + file);
+            }
+            if (!in.readString().equals(computeInputHash(apkFile))) {
+                throw new IOException("Call graph snapshot was saved for a different apk or classpath: " + file);
+            }
+
+            int nrEntryPointClasses = in.readVarInt();
+            for (int i = 0; i < nrEntryPointClasses; i++) {
+                String className = in.readString();
+                loadJimpleClass(className, in.readString());
+            }
+            int nrEntryPoints = in.readVarInt();
+            List<SootMethod> entryPoints = new ArrayList<>(nrEntryPoints);
+            for (int i = 0; i < nrEntryPoints; i++) {
+                entryPoints.add(scene.getMethod(in.readString()));
+            }
+            scene.setEntryPoints(entryPoints);
+
+            Map<String, Kind> kinds = getKinds();
+            CallGraph cg = new CallGraph();
+            int nrEdges = in.readVarInt();
+            int nrDroppedEdges = 0;
+            for (int i = 0; i < nrEdges; i++) {
+                SootMethod src = grabMethod(in.readString());
+                Unit srcUnit = bodyIndex.read(in, src);
+                SootMethod tgt = grabMethod(in.readString());
+                Kind kind = kinds.get(in.readString());
+                if (src == null || srcUnit == BodyIndex.MISMATCH || tgt == null || kind == null) {
+                    nrDroppedEdges++;
+                    continue;
+                }
+                cg.addEdge(new Edge(src, (Stmt) srcUnit, tgt, kind));
+            }
+            scene.setCallGraph(cg);
+
+            SnapshotPointsToAnalysis pta = new SnapshotPointsToAnalysis();
+            int nrPointsToEntries = in.readVarInt();
+            int nrDroppedPointsTo = 0;
+            for (int i = 0; i < nrPointsToEntries; i++) {
+                if (!PointsToEntry.read(in, bodyIndex, pta)) {
+                    nrDroppedPointsTo++;
+                }
+            }
+            scene.setPointsToAnalysis(pta);
+
+            logger.info("DP: Call graph snapshot loaded: " + (nrEdges - nrDroppedEdges) + " edges, " + pta.size()
+                    + " points-to entries, time " + (System.currentTimeMillis() - startTime) / 1E3 + " sec");
+            if (nrDroppedEdges > 0 || nrDroppedPointsTo > 0) {
+                logger.warn("DP: Call graph snapshot doesn't match the Scene. Dropped " + nrDroppedEdges + " edges and "
+                        + nrDroppedPointsTo + " points-to entries. Snapshot was likely saved with different Soot "
+                        + "options.");
+            }
+        }
+    }
+
+    /**
+     * Computes the points-to queries DroidPerm might perform on methods with outgoing edges. Contexts are the call
+     * sites of the method, plus null.
+     * <ul>
+     * <li>Virtual invoke targets, through PointsToUtil.getPointsTo(). Used by OutflowGraph.</li>
+     * <li>String and String[] invoke arguments, through PointsToUtil.getPointsToWithFallback(). Used by
+     * CheckerAnalysis, for any checker that might be defined.</li>
+     * </ul>
+     */
+    private static List<PointsToEntry> computePointsToEntries(Set<SootMethod> methods, CallGraph cg,
+                                                              PointsToAnalysis pta) {
+        List<PointsToEntry> result = new ArrayList<>();
+        for (SootMethod method : methods) {
+            if (!method.hasActiveBody()) {
+                continue;
+            }
+            List<Stmt> contexts = new ArrayList<>();
+            contexts.add(null);
+            Set<Stmt> callSites = new LinkedHashSet<>();
+            cg.edgesInto(method).forEachRemaining(edge -> {
+                if (edge.srcStmt() != null) {
+                    callSites.add(edge.srcStmt());
+                }
+            });
+            contexts.addAll(callSites);
+
+            for (Unit unit : method.getActiveBody().getUnits()) {
+                Stmt stmt = (Stmt) unit;
+                if (!stmt.containsInvokeExpr() || !cg.edgesOutOf(stmt).hasNext()) {
+                    continue;
+                }
+                InstanceInvokeExpr virtualInvoke = PointsToUtil.getVirtualInvokeIfPresent(stmt);
+                if (virtualInvoke != null) {
+                    Local target = (Local) virtualInvoke.getBase();
+                    for (Stmt context : contexts) {
+                        result.add(new PointsToEntry(method, target, context, false,
+                                PointsToUtil.getPointsTo(virtualInvoke, context, pta)));
+                    }
+                }
+                for (Value arg : stmt.getInvokeExpr().getArgs()) {
+                    if (arg instanceof Local && isStringOrStringArray(arg.getType())) {
+                        for (Stmt context : contexts) {
+                            result.add(new PointsToEntry(method, (Local) arg, context, true,
+                                    PointsToUtil.getPointsToWithFallback((Local) arg, context, pta)));
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * SHA-256 of the apk and of the files on Soot classpath, in classpath order. The apk is hashed once, even if it is
+     * also on the classpath. Directories on the classpath are identified by path.
+     */
+    private static String computeInputHash(File apkFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        updateWithContent(digest, apkFile);
+        File canonicalApk = apkFile.getCanonicalFile();
+        for (String entry : Options.v().soot_classpath().split(File.pathSeparator)) {
+            File file = new File(entry);
+            if (entry.isEmpty() || file.getCanonicalFile().equals(canonicalApk)) {
+                continue;
+            }
+            if (file.isFile()) {
+                updateWithContent(digest, file);
+            } else {
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            }
+            //separator, to avoid ambiguities between consecutive entries
+            digest.update((byte) 0);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static void updateWithContent(MessageDigest digest, File file) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+            }
+        }
+    }
+
+    private static boolean isStringOrStringArray(Type type) {
+        Type baseType = type instanceof ArrayType ? ((ArrayType) type).baseType : type;
+        return baseType.toString().equals("java.lang.String");
+    }
+
+    private static String toJimple(SootClass sootClass) {
+        StringWriter writer = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(writer)) {
+            Printer.v().printTo(sootClass, printWriter);
+        }
+        return writer.toString();
+    }
+
+    private static void loadJimpleClass(String className, String jimple) throws IOException {
+        Scene scene = Scene.v();
+        if (scene.containsClass(className)) {
+            scene.removeClass(scene.getSootClass(className));
+        }
+        SootClass sootClass = new SootClass(className);
+        scene.addClass(sootClass);
+        sootClass.setApplicationClass();
+        try {
+            JimpleAST ast = new JimpleAST(new ByteArrayInputStream(jimple.getBytes(StandardCharsets.UTF_8)));
+            ast.getSkeleton(sootClass);
+            for (SootMethod method : sootClass.getMethods()) {
+                if (method.isConcrete()) {
+                    method.setActiveBody(ast.getBody(method));
+                }
+            }
+        } catch (Exception e) {
+            throw new IOException("Cannot restore class " + className + " from call graph snapshot", e);
+        }
+    }
+
+    private static SootMethod grabMethod(String signature) {
+        SootMethod method = Scene.v().grabMethod(signature);
+        if (method == null) {
+            logger.debug("Call graph snapshot: method not found: " + signature);
+        }
+        return method;
+    }
+
+    /**
+     * Kind has no lookup by name, kinds are collected from its constants.
+     */
+    private static Map<String, Kind> getKinds() {
+        Map<String, Kind> result = new HashMap<>();
+        for (Field field : Kind.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == Kind.class) {
+                try {
+                    Kind kind = (Kind) field.get(null);
+                    result.put(kind.toString(), kind);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Type parseType(String typeName) {
+        if (typeName.startsWith(ANY_SUBTYPE_PREFIX)) {
+            return AnySubType.v(RefType.v(typeName.substring(ANY_SUBTYPE_PREFIX.length())));
+        }
+        return Scene.v().getType(typeName);
+    }
+
+    /**
+     * Statements are referred by method and index in the method body, followed by a hash of the statement text for
+     * validation. Index 0 is the null statement. Locals are referred by name.
+     */
+    private static class BodyIndex {
+
+        static final Unit MISMATCH = new soot.jimple.internal.JNopStmt();
+
+        private final Map<SootMethod, Map<Unit, Integer>> unitToIndex = new HashMap<>();
+        private final Map<SootMethod, List<Unit>> indexToUnit = new HashMap<>();
+        private final Map<SootMethod, Map<String, Local>> locals = new HashMap<>();
+
+        void write(InternedDataOutput out, SootMethod method, Unit unit) throws IOException {
+            Integer index = unit != null && method != null && method.hasActiveBody()
+                            ? unitToIndex.computeIfAbsent(method, BodyIndex::buildUnitToIndex).get(unit)
+                            : null;
+            if (index == null) {
+                out.writeVarInt(0);
+                return;
+            }
+            out.writeVarInt(index + 1);
+            out.writeInt(unit.toString().hashCode());
+        }
+
+        /**
+         * @return the unit, null for the null unit or MISMATCH if the unit is not found in method.
+         */
+        Unit read(InternedDataInput in, SootMethod method) throws IOException {
+            int index = in.readVarInt() - 1;
+            if (index < 0) {
+                return null;
+            }
+            int hash = in.readInt();
+            if (method == null || !method.isConcrete()) {
+                return MISMATCH;
+            }
+            List<Unit> units = indexToUnit.computeIfAbsent(method, meth -> {
+                Body body = SceneUtil.retrieveBody(meth);
+                return body != null ? new ArrayList<>(body.getUnits()) : Collections.emptyList();
+            });
+            Unit unit = index < units.size() ? units.get(index) : null;
+            return unit != null && unit.toString().hashCode() == hash ? unit : MISMATCH;
+        }
+
+        /**
+         * @return the local with the given name in the body of method, or null if not found.
+         */
+        Local getLocal(SootMethod method, String name) {
+            if (method == null || !method.hasActiveBody()) {
+                return null;
+            }
+            return locals.computeIfAbsent(method, meth -> {
+                Map<String, Local> result = new HashMap<>();
+                meth.getActiveBody().getLocals().forEach(local -> result.put(local.getName(), local));
+                return result;
+            }).get(name);
+        }
+
+        private static Map<Unit, Integer> buildUnitToIndex(SootMethod method) {
+            Map<Unit, Integer> result = new HashMap<>();
+            int index = 0;
+            for (Unit unit : method.getActiveBody().getUnits()) {
+                result.put(unit, index++);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Points-to result for a local of a method, in a context.
+     */
+    private static class PointsToEntry {
+
+        final SootMethod method;
+        final Local local;
+        final Stmt context;
+        final boolean withFallback;
+
+        /**
+         * Null if the query has thrown an exception.
+         */
+        final PointsToSet pointsTo;
+
+        PointsToEntry(SootMethod method, Local local, Stmt context, boolean withFallback, PointsToSet pointsTo) {
+            this.method = method;
+            this.local = local;
+            this.context = context;
+            this.withFallback = withFallback;
+            this.pointsTo = pointsTo;
+        }
+
+        void write(InternedDataOutput out, BodyIndex bodyIndex) throws IOException {
+            out.writeString(method.getSignature());
+            out.writeString(local.getName());
+            SootMethod contextMethod = context != null ? SceneUtil.getMethodOf(context) : null;
+            out.writeString(contextMethod != null ? contextMethod.getSignature() : null);
+            bodyIndex.write(out, contextMethod, context);
+            out.writeBoolean(withFallback);
+            out.writeBoolean(pointsTo != null);
+            if (pointsTo == null) {
+                return;
+            }
+            Set<Type> types = pointsTo.possibleTypes();
+            out.writeVarInt(types.size());
+            for (Type type : types) {
+                out.writeString(type.toString());
+            }
+            Set<String> stringConstants = pointsTo.possibleStringConstants();
+            out.writeVarInt(stringConstants != null ? stringConstants.size() + 1 : 0);
+            if (stringConstants != null) {
+                for (String constant : stringConstants) {
+                    out.writeString(constant);
+                }
+            }
+        }
+
+        /**
+         * @return false if the entry doesn't match the Scene and was dropped.
+         */
+        static boolean read(InternedDataInput in, BodyIndex bodyIndex, SnapshotPointsToAnalysis pta)
+                throws IOException {
+            SootMethod method = grabMethod(in.readString());
+            String localName = in.readString();
+            String contextMethodSig = in.readString();
+            SootMethod contextMethod = contextMethodSig != null ? grabMethod(contextMethodSig) : null;
+            Unit context = bodyIndex.read(in, contextMethod);
+            boolean withFallback = in.readBoolean();
+            SnapshotPointsToAnalysis.SnapshotPointsToSet set = SnapshotPointsToAnalysis.FAILED;
+            if (in.readBoolean()) {
+                int nrTypes = in.readVarInt();
+                Set<Type> types = new HashSet<>(nrTypes * 2);
+                for (int i = 0; i < nrTypes; i++) {
+                    types.add(parseType(in.readString()));
+                }
+                int nrConstants = in.readVarInt() - 1;
+                Set<String> constants = nrConstants >= 0 ? new HashSet<>(nrConstants * 2) : null;
+                for (int i = 0; i < nrConstants; i++) {
+                    constants.add(in.readString());
+                }
+                set = new SnapshotPointsToAnalysis.SnapshotPointsToSet(types, constants);
+            }
+
+            Local local = bodyIndex.getLocal(method, localName);
+            if (local == null || context == BodyIndex.MISMATCH || (contextMethodSig != null && context == null)) {
+                return false;
+            }
+            pta.putReachingObjects(local, context, set, withFallback);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.oregonstate.droidperm.scene;
+
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.toolkits.scalar.Pair;
+import soot.util.NumberedString;
+
+import java.util.*;
+
+/**
+ * Resolves batches of method signatures against the current Scene. Replaces repeated calls to Scene.grabMethod() and
+ * Hierarchy.resolveAbstractDispatch():
+ * <ul>
+ * <li>Signatures are split by hand instead of through a regex.</li>
+ * <li>Declaring classes are looked up once per batch, methods are looked up by NumberedString subsignature.</li>
+ * <li>Abstract dispatch results are shared by all entries with the same base method.</li>
+ * </ul>
+ * An instance is bound to the Scene at creation time, and should not outlive a batch of queries.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class MethodSignatureResolver {
+
+    private final Scene scene = Scene.v();
+
+    /**
+     * From class name to class. Null values for classes not in Scene.
+     */
+    private final Map<String, SootClass> classIndex = new HashMap<>();
+
+    private final Map<Pair<SootClass, SootMethod>, List<SootMethod>> abstractDispatchCache = new HashMap<>();
+
+    private int dispatchCacheHits;
+
+    /**
+     * For entries starting with SceneUtil.EXTENDS_PREFIX, all implementing methods are included. Signatures not found
+     * in Scene are ignored.
+     */
+    public Set<SootMethod> resolveQueries(List<String> sigQueries) {
+        Set<SootMethod> result = new LinkedHashSet<>();
+        for (String sigQuery : sigQueries) {
+            result.addAll(resolveQuery(sigQuery));
+        }
+        return result;
+    }
+
+    public List<SootMethod> resolveQuery(String sigQuery) {
+        boolean includeOverriding = sigQuery.startsWith(SceneUtil.EXTENDS_PREFIX);
+        String sig = includeOverriding ? sigQuery.substring(SceneUtil.EXTENDS_PREFIX.length()) : sigQuery;
+
+        SootMethod method = grabMethod(sig);
+        if (method == null) {
+            return Collections.emptyList();
+        }
+        return includeOverriding
+               ? resolveAbstractDispatch(method.getDeclaringClass(), method)
+               : Collections.singletonList(method);
+    }
+
+    /**
+     * Same as Scene.grabMethod(), except invalid signatures throw an exception.
+     *
+     * @param signature in the format "&lt;class: subsignature&gt;". Surrounding spaces are allowed.
+     * @return the method, or null if not in Scene.
+     */
+    public SootMethod grabMethod(String signature) {
+        String sig = signature.trim();
+        int colon = sig.indexOf(':');
+        if (!sig.startsWith("<") || !sig.endsWith(">") || colon < 0) {
+            throw new RuntimeException("Invalid method signature: " + signature);
+        }
+        SootClass sootClass = getClass(sig.substring(1, colon));
+        if (sootClass == null) {
+            return null;
+        }
+        NumberedString subsig = scene.getSubSigNumberer().find(sig.substring(colon + 1, sig.length() - 1).trim());
+
+        //if subsignature was never numbered, no method in Scene has it
+        return subsig != null ? sootClass.getMethodUnsafe(subsig) : null;
+    }
+
+    /**
+     * @return the class, or null if not in Scene.
+     */
+    public SootClass getClass(String className) {
+        if (classIndex.containsKey(className)) {
+            return classIndex.get(className);
+        }
+        SootClass sootClass = scene.getSootClassUnsafe(className);
+        classIndex.put(className, sootClass);
+        return sootClass;
+    }
+
+    public List<SootMethod> resolveAbstractDispatch(SootClass sootClass, SootMethod method) {
+        Pair<SootClass, SootMethod> key = new Pair<>(sootClass, method);
+        List<SootMethod> result = abstractDispatchCache.get(key);
+        if (result != null) {
+            dispatchCacheHits++;
+            return result;
+        }
+        result = scene.getActiveHierarchy().resolveAbstractDispatch(sootClass, method);
+        abstractDispatchCache.put(key, result);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MethodSignatureResolver: classes " + classIndex.size() + ", abstract dispatches "
+                + abstractDispatchCache.size() + ", abstract dispatch cache hits " + dispatchCacheHits;
+    }
+}
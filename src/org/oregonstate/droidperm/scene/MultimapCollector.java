@@ -0,0 +1,48 @@
+package org.oregonstate.droidperm.scene;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import soot.jimple.Stmt;
+
+import java.util.function.BiConsumer;
+
+/**
+ * ScanCollector that collects statements into a multimap.
+ *
+ * @param <K> the key of collected statements, e.g. the referred sensitive.
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+class MultimapCollector<K> implements ScanCollector {
+
+    /**
+     * Inspects the statement and puts it into the multimap, if relevant.
+     */
+    private final BiConsumer<ScannedStmt, Multimap<K, Stmt>> collectFunction;
+    private final Multimap<K, Stmt> result;
+
+    MultimapCollector(BiConsumer<ScannedStmt, Multimap<K, Stmt>> collectFunction, Multimap<K, Stmt> result) {
+        this.collectFunction = collectFunction;
+        this.result = result;
+    }
+
+    @Override
+    public void accept(ScannedStmt scannedStmt) {
+        int oldSize = result.size();
+        collectFunction.accept(scannedStmt, result);
+        if (result.size() != oldSize) {
+            //collected statements are usually looked up later through SceneUtil.getMethodOf()
+            SceneUtil.registerMethodOf(scannedStmt.getStmt(), scannedStmt.getMethod());
+        }
+    }
+
+    @Override
+    public ScanCollector fork() {
+        return new MultimapCollector<>(collectFunction, HashMultimap.create());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void merge(ScanCollector fork) {
+        result.putAll(((MultimapCollector<K>) fork).result);
+    }
+}
@@ -0,0 +1,23 @@
+package org.oregonstate.droidperm.scene;
+
+import java.util.function.Consumer;
+
+/**
+ * Collector of SceneScanner results. In a parallel scan each thread gets its own collectors, created through fork(),
+ * and the results of all threads are merged back into the original collectors at the end of the scan. Thus collectors
+ * don't need to be thread-safe.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public interface ScanCollector extends Consumer<ScannedStmt> {
+
+    /**
+     * @return an empty collector with the same configuration as this one.
+     */
+    ScanCollector fork();
+
+    /**
+     * Adds to this collector the results of a collector created by fork().
+     */
+    void merge(ScanCollector fork);
+}
@@ -0,0 +1,125 @@
+package org.oregonstate.droidperm.scene;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.SootField;
+import soot.SootMethod;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A statement decoded once by SceneScanner and shared by all collectors of a scan. Each part of the statement is
+ * decoded at first request, so collectors only pay for what they use. Not thread-safe, an instance is only used by the
+ * thread scanning its method.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class ScannedStmt {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScannedStmt.class);
+
+    private final SceneScanner scanner;
+    private final Stmt stmt;
+    private final SootMethod method;
+
+    private boolean invokeDecoded;
+    private InvokeExpr invokeExpr;
+    private SootMethod invokeMethod;
+
+    private boolean fieldDecoded;
+    private SootField field;
+
+    private List<String> stringConstants;
+    private List<Integer> intConstants;
+
+    ScannedStmt(SceneScanner scanner, Stmt stmt, SootMethod method) {
+        this.scanner = scanner;
+        this.stmt = stmt;
+        this.method = method;
+    }
+
+    public Stmt getStmt() {
+        return stmt;
+    }
+
+    /**
+     * @return the method containing the statement.
+     */
+    public SootMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the invoke expression, or null if the statement doesn't contain one.
+     */
+    public InvokeExpr getInvokeExpr() {
+        decodeInvoke();
+        return invokeExpr;
+    }
+
+    /**
+     * @return the statically invoked method, or null if the statement doesn't contain an invoke or the invoked method
+     * cannot be resolved.
+     */
+    public SootMethod getInvokeMethod() {
+        decodeInvoke();
+        return invokeMethod;
+    }
+
+    /**
+     * @return all concrete methods that might be called for the invoked method, through
+     * HierarchyUtil.dispatchInvokeMethod(). Results are cached and shared by all statements with the same invoked
+     * method. Empty if there is no invoked method.
+     */
+    public List<SootMethod> getAbstractDispatchTargets() {
+        SootMethod target = getInvokeMethod();
+        return target != null ? scanner.resolveAbstractDispatch(target) : Collections.emptyList();
+    }
+
+    /**
+     * @return the field referred by the statement, or null if there is none, or it is in a phantom class or cannot be
+     * resolved.
+     */
+    public SootField getField() {
+        if (!fieldDecoded) {
+            fieldDecoded = true;
+            //On incomplete code we might get field references on phantom classes. They should be skipped.
+            if (stmt.containsFieldRef() && !stmt.getFieldRef().getFieldRef().declaringClass().isPhantom()) {
+                field = scanner.resolveField(stmt.getFieldRef());
+            }
+        }
+        return field;
+    }
+
+    public List<String> getStringConstants() {
+        if (stringConstants == null) {
+            stringConstants = SceneUtil.getStringConstantsIfAny(stmt);
+        }
+        return stringConstants;
+    }
+
+    public List<Integer> getIntConstants() {
+        if (intConstants == null) {
+            intConstants = SceneUtil.getIntConstantsIfAny(stmt);
+        }
+        return intConstants;
+    }
+
+    private void decodeInvoke() {
+        if (invokeDecoded) {
+            return;
+        }
+        invokeDecoded = true;
+        if (stmt.containsInvokeExpr()) {
+            invokeExpr = stmt.getInvokeExpr();
+            try {
+                invokeMethod = scanner.resolveMethod(invokeExpr);
+            } catch (Exception e) {
+                logger.debug("Exception in getMethod() for " + invokeExpr + " : " + e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.oregonstate.droidperm.scene;
+
+import org.oregonstate.droidperm.main.DroidPermMain;
+import org.oregonstate.droidperm.util.HierarchyUtil;
+import soot.*;
+import soot.jimple.FieldRef;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Single pass scan of the Scene with multiple collectors. Each statement is decoded once into a ScannedStmt, which is
+ * then passed to all collectors. Abstract dispatch of invoked methods is cached by HierarchyUtil, so it is shared by
+ * all collectors, by consecutive scans and by the traversal of the CHA scan.
+ * <p>
+ * With more than one thread, scanClasses() scans method bodies in parallel, each thread with its own forks of the
+ * collectors. Soot is not thread-safe, so everything that might modify the Scene (body retrieval, method and field
+ * resolution, abstract dispatch) is synchronized on the Scene. Bodies already loaded, e.g. during call graph
+ * construction, are used without locking. The CHA scan is always sequential, because the traversal order depends on
+ * its own results.
+ * <p>
+ * An instance is bound to the Scene at creation time.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class SceneScanner {
+
+    private final Scene scene = Scene.v();
+    private final int threads;
+
+    private final LongAdder nrScannedStmts = new LongAdder();
+
+    /**
+     * Scanner with DroidPermMain.sceneScanThreads threads.
+     */
+    public SceneScanner() {
+        this(DroidPermMain.sceneScanThreads);
+    }
+
+    public SceneScanner(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Same traversal as SceneUtil.traverseClasses().
+     */
+    public void scanClasses(Collection<SootClass> classes, Predicate<SootMethod> classpathFilter,
+                            ScanCollector... collectors) {
+        List<ScanCollector> collectorList = Arrays.asList(collectors);
+        if (threads <= 1) {
+            SceneUtil.traverseClasses(classes, classpathFilter,
+                    (stmt, method) -> dispatch(stmt, method, collectorList));
+            return;
+        }
+
+        Predicate<SootMethod> filter = classpathFilter != null ? classpathFilter : meth -> true;
+        List<SootMethod> methods = classes.stream()
+                .flatMap(sc -> sc.getMethods().stream()).filter(SootMethod::isConcrete).filter(filter)
+                .collect(Collectors.toList());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ScanCollector> threadResults = pool.submit(() -> methods.parallelStream().collect(
+                    () -> fork(collectorList),
+                    (forks, method) -> scanMethod(method, forks),
+                    SceneScanner::merge
+            )).join();
+            merge(collectorList, threadResults);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Same traversal as SceneUtil.traverseCHACallGraph(). Always sequential.
+     */
+    public void scanCHACallGraph(SootMethod dummyMain, Predicate<SootMethod> classpathFilter,
+                                 ScanCollector... collectors) {
+        List<ScanCollector> collectorList = Arrays.asList(collectors);
+        SceneUtil.traverseCHACallGraph(dummyMain, classpathFilter,
+                (stmt, method) -> dispatch(stmt, method, collectorList));
+    }
+
+    private void scanMethod(SootMethod method, List<ScanCollector> collectors) {
+        //Each method is scanned by one thread, so hasActiveBody() is stable for this method.
+        Body body = method.hasActiveBody() ? method.getActiveBody() : inSceneLock(() -> SceneUtil.retrieveBody(method));
+        if (body != null) {
+            body.getUnits().forEach(unit -> dispatch((Stmt) unit, method, collectors));
+        }
+    }
+
+    private void dispatch(Stmt stmt, SootMethod method, List<ScanCollector> collectors) {
+        nrScannedStmts.increment();
+        ScannedStmt scannedStmt = new ScannedStmt(this, stmt, method);
+        for (ScanCollector collector : collectors) {
+            collector.accept(scannedStmt);
+        }
+    }
+
+    private static List<ScanCollector> fork(List<ScanCollector> collectors) {
+        return collectors.stream().map(ScanCollector::fork).collect(Collectors.toList());
+    }
+
+    private static void merge(List<ScanCollector> collectors, List<ScanCollector> forks) {
+        for (int i = 0; i < collectors.size(); i++) {
+            collectors.get(i).merge(forks.get(i));
+        }
+    }
+
+    SootMethod resolveMethod(InvokeExpr invokeExpr) {
+        return inSceneLock(invokeExpr::getMethod);
+    }
+
+    SootField resolveField(FieldRef fieldRef) {
+        return inSceneLock(() -> SceneUtil.resolve(fieldRef));
+    }
+
+    List<SootMethod> resolveAbstractDispatch(SootMethod invokeMethod) {
+        return threads > 1
+               ? HierarchyUtil.dispatchInvokeMethodLocked(invokeMethod)
+               : HierarchyUtil.dispatchInvokeMethod(invokeMethod);
+    }
+
+    private <T> T inSceneLock(Supplier<T> supplier) {
+        if (threads <= 1) {
+            return supplier.get();
+        }
+        synchronized (scene) {
+            return supplier.get();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SceneScanner: threads " + threads + ", scanned statements " + nrScannedStmts;
+    }
+}
@@ -10,12 +10,12 @@ import soot.*;
 import soot.jimple.*;
 import soot.tagkit.IntegerConstantValueTag;
 import soot.tagkit.StringConstantValueTag;
+import soot.util.NumberedString;
 
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -25,42 +25,16 @@ public class SceneUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(SceneUtil.class);
     public static final String EXTENDS_PREFIX = "? extends ";
-    private static Map<Unit, SootMethod> stmtToMethodMap;
+    private static StmtContainerIndex stmtContainerIndex;
 
     /**
      * For entries starting with "? extends ", all implementing methods will be grabbed.
      */
     public static Set<SootMethod> grabMethods(List<String> signatures) {
-        Predicate<String> methodSigTester = Pattern.compile("^\\s*<(.*?):\\s*(.*?)>\\s*$").asPredicate();
-
-        return signatures.stream().flatMap(sig -> resolveSigQuery(methodSigTester, sig).stream())
-                .collect(Collectors.toCollection(LinkedHashSet::new));
-    }
-
-    private static List<SootMethod> resolveSigQuery(Predicate<String> methodSigTester, String sigQuery) {
-        String sig;
-        boolean ignoreInHierarchy;
-        if (sigQuery.startsWith(EXTENDS_PREFIX)) {
-            sig = sigQuery.substring(EXTENDS_PREFIX.length());
-            ignoreInHierarchy = true;
-        } else {
-            sig = sigQuery;
-            ignoreInHierarchy = false;
-        }
-
-        if (!methodSigTester.test(sig)) {
-            throw new RuntimeException(("Invalid method signature: " + sig));
-        }
-
-        SootMethod method = Scene.v().grabMethod(sig.trim());
-        if (method == null) {
-            return Collections.emptyList();
-        }
-        if (!ignoreInHierarchy) {
-            return Collections.singletonList(method);
-        } else {
-            return Scene.v().getActiveHierarchy().resolveAbstractDispatch(method.getDeclaringClass(), method);
-        }
+        MethodSignatureResolver resolver = new MethodSignatureResolver();
+        Set<SootMethod> result = resolver.resolveQueries(signatures);
+        logger.debug(resolver.toString());
+        return result;
     }
 
     /**
@@ -141,40 +115,29 @@ public class SceneUtil {
     /**
      * @param result Multimap where result will be collected. A multimap from methods to statements possibly invoking
      *               that methods.
-     * @return a Pair consisting of the BiConsumer that has to be passed to traverseClasses to collect all method
-     * usages, and the result where these usages will be collected.
+     * @return the collector that has to be passed to SceneScanner to collect all method usages into result.
      */
-    public static BiConsumer<Stmt, SootMethod> createMethodUsagesCollector(
+    public static ScanCollector createMethodUsagesCollector(
             Collection<SootMethod> sootMethods, Multimap<SootMethod, Stmt> result) {
         Set<SootMethod> methodSet = sootMethods instanceof Set ? (Set) sootMethods : new HashSet<>(sootMethods);
 
         //for performance optimization
-        Set<String> sensSubsignatures =
-                methodSet.stream().map(SootMethod::getSubSignature).collect(Collectors.toSet());
+        Set<NumberedString> sensSubsignatures =
+                methodSet.stream().map(SootMethod::getNumberedSubSignature).collect(Collectors.toSet());
 
-        return (stmt, method) -> collectResolvedMethods(methodSet, sensSubsignatures, result, stmt);
+        return new MultimapCollector<>((scannedStmt, resultOrFork)
+                -> collectResolvedMethods(methodSet, sensSubsignatures, resultOrFork, scannedStmt), result);
     }
 
-    private static void collectResolvedMethods(Set<SootMethod> sensitives, Set<String> sensSubsignatures,
-                                               Multimap<SootMethod, Stmt> result, Stmt stmt) {
-        if (stmt.containsInvokeExpr()) {
-            InvokeExpr invoke = stmt.getInvokeExpr();
-            SootMethod invokeMethod;
-            try {
-                invokeMethod = invoke.getMethod();
-            } catch (Exception e) {
-                logger.debug("Exception in getMethod() for " + invoke + " : " + e.toString());
-                return;
-            }
-
-            if (sensSubsignatures.contains(invokeMethod.getSubSignature())) {
-                List<SootMethod> resolvedMethods = Scene.v().getActiveHierarchy().resolveAbstractDispatch(
-                        invokeMethod.getDeclaringClass(), invokeMethod);
-                if (!Collections.disjoint(resolvedMethods, sensitives)) {
-                    //this unit calls a sensitive.
-                    SootMethod sens = resolvedMethods.stream().filter(sensitives::contains).findAny().orElse(null);
-                    result.put(sens, stmt);
-                }
+    private static void collectResolvedMethods(Set<SootMethod> sensitives, Set<NumberedString> sensSubsignatures,
+                                               Multimap<SootMethod, Stmt> result, ScannedStmt scannedStmt) {
+        SootMethod invokeMethod = scannedStmt.getInvokeMethod();
+        if (invokeMethod != null && sensSubsignatures.contains(invokeMethod.getNumberedSubSignature())) {
+            List<SootMethod> resolvedMethods = scannedStmt.getAbstractDispatchTargets();
+            if (!Collections.disjoint(resolvedMethods, sensitives)) {
+                //this unit calls a sensitive.
+                SootMethod sens = resolvedMethods.stream().filter(sensitives::contains).findAny().orElse(null);
+                result.put(sens, scannedStmt.getStmt());
             }
         }
     }
@@ -182,24 +145,23 @@ public class SceneUtil {
     /**
      * @param result Multimap where result will be collected. A multimap from fields to statements possibly referring
      *               that fields.
-     * @return a Pair consisting of the BiConsumer that has to be passed to traverseClasses to collect all field usages,
-     * and the result where these usages will be collected.
+     * @return the collector that has to be passed to SceneScanner to collect all field usages into result.
      */
-    public static BiConsumer<Stmt, SootMethod> createFieldUsagesCollector(
+    public static ScanCollector createFieldUsagesCollector(
             Collection<SootField> sensFields, Multimap<SootField, Stmt> result) {
         Set<SootField> sensFieldsSet = sensFields instanceof Set ? (Set) sensFields : new HashSet<>(sensFields);
         Map<String, SootField> stringConstantFieldsMap = buildStringConstantFieldsMap(sensFieldsSet);
         Map<Integer, SootField> intConstantFieldsMap = buildIntConstantFieldsMap(sensFieldsSet);
-        return (stmt, method)
-                -> collectResolvedFields(sensFieldsSet, stringConstantFieldsMap, intConstantFieldsMap, result, stmt);
+        return new MultimapCollector<>((scannedStmt, resultOrFork) -> collectResolvedFields(sensFieldsSet,
+                stringConstantFieldsMap, intConstantFieldsMap, resultOrFork, scannedStmt), result);
     }
 
     private static void collectResolvedFields(Set<SootField> sensFields, Map<String, SootField> stringConstantFieldsMap,
                                               Map<Integer, SootField> intConstantFieldsMap,
-                                              Multimap<SootField, Stmt> result, Stmt stmt) {
-        List<SootField> fields = getReferredFields(stmt, stringConstantFieldsMap, intConstantFieldsMap);
+                                              Multimap<SootField, Stmt> result, ScannedStmt scannedStmt) {
+        List<SootField> fields = getReferredFields(scannedStmt, stringConstantFieldsMap, intConstantFieldsMap);
         fields.stream().filter(sensFields::contains).forEach(field ->
-                result.put(field, stmt)
+                result.put(field, scannedStmt.getStmt())
         );
     }
 
@@ -237,30 +199,28 @@ public class SceneUtil {
                 .findAny().orElse(null);
     }
 
-    private static List<SootField> getReferredFields(Stmt stmt, Map<String, SootField> stringConstantFieldsMap,
+    private static List<SootField> getReferredFields(ScannedStmt scannedStmt,
+                                                     Map<String, SootField> stringConstantFieldsMap,
                                                      Map<Integer, SootField> intConstantFieldsMap) {
         List<SootField> result = new ArrayList<>();
 
-        //On incomplete code we might get field references on phantom classes. They should be skipped.
-        if (stmt.containsFieldRef() && !stmt.getFieldRef().getFieldRef().declaringClass().isPhantom()) {
-            SootField field = resolve(stmt.getFieldRef());
-            if (field != null) {
-                result.add(field);
-            }
+        SootField field = scannedStmt.getField();
+        if (field != null) {
+            result.add(field);
         }
         //If the referred field is a String constant, it will be inlined into the statement using it.
         //Thus we have to serch it among the constants.
-        getStringConstantsIfAny(stmt).stream().filter(stringConstantFieldsMap::containsKey)
-                .forEach(stringConst -> result.add(stringConstantFieldsMap.get(stringConst)));
+        if (!stringConstantFieldsMap.isEmpty()) {
+            scannedStmt.getStringConstants().stream().filter(stringConstantFieldsMap::containsKey)
+                    .forEach(stringConst -> result.add(stringConstantFieldsMap.get(stringConst)));
+        }
 
         //If the referred field is an int constant, it will be inlined into the statement using it.
         //Thus we have to serch it among the constants.
         //Only including int constants that are arguments to TelephonyManager.listen()
-        String telephonyManagerListen =
-                "<android.telephony.TelephonyManager: void listen(android.telephony.PhoneStateListener,int)>";
-        if (stmt.containsInvokeExpr() && stmt.getInvokeExpr().getMethodRef().getSignature()
-                .equals(telephonyManagerListen)) {
-            getIntConstantsIfAny(stmt).stream()
+        InvokeExpr invoke = scannedStmt.getInvokeExpr();
+        if (invoke != null && !intConstantFieldsMap.isEmpty() && isTelephonyManagerListen(invoke.getMethodRef())) {
+            scannedStmt.getIntConstants().stream()
                     .flatMap(argInt -> intConstantFieldsMap.keySet().stream()
                             .filter(fieldInt -> (fieldInt & argInt) != 0))
                     .forEach(intConst -> result.add(intConstantFieldsMap.get(intConst)));
@@ -269,7 +229,13 @@ public class SceneUtil {
         return result;
     }
 
-    private static SootField resolve(FieldRef fieldRef) {
+    private static boolean isTelephonyManagerListen(SootMethodRef methodRef) {
+        //name is checked first, to avoid building the signature for every invoke
+        return methodRef.name().equals("listen") && methodRef.getSignature().equals(
+                "<android.telephony.TelephonyManager: void listen(android.telephony.PhoneStateListener,int)>");
+    }
+
+    static SootField resolve(FieldRef fieldRef) {
         try {
             return fieldRef.getField();
         } catch (NullPointerException e) {
@@ -285,23 +251,25 @@ public class SceneUtil {
                                                                Predicate<SootMethod> classpathFilter) {
         Set<String> constantsSet = constants instanceof Set ? (Set) constants : new HashSet<>(constants);
         Multimap<String, Stmt> result = HashMultimap.create();
-        traverseClasses(Scene.v().getApplicationClasses(), classpathFilter,
-                (stmt, method) -> collectResolvedConstants(constantsSet, result, stmt));
+        new SceneScanner().scanClasses(Scene.v().getApplicationClasses(), classpathFilter,
+                new MultimapCollector<>((scannedStmt, resultOrFork)
+                        -> collectResolvedConstants(constantsSet, resultOrFork, scannedStmt), result));
         return result;
     }
 
-    private static void collectResolvedConstants(Set<String> constantsSet, Multimap<String, Stmt> result, Stmt stmt) {
-        List<String> referredConst = getStringConstantsIfAny(stmt);
+    private static void collectResolvedConstants(Set<String> constantsSet, Multimap<String, Stmt> result,
+                                                 ScannedStmt scannedStmt) {
+        List<String> referredConst = scannedStmt.getStringConstants();
         referredConst.stream().filter(constantsSet::contains).forEach(constant ->
-                result.put(constant, stmt)
+                result.put(constant, scannedStmt.getStmt())
         );
     }
 
-    private static List<String> getStringConstantsIfAny(Stmt stmt) {
+    static List<String> getStringConstantsIfAny(Stmt stmt) {
         return getConstantsIfAny(stmt, SceneUtil::getStringIfStringConstant);
     }
 
-    private static List<Integer> getIntConstantsIfAny(Stmt stmt) {
+    static List<Integer> getIntConstantsIfAny(Stmt stmt) {
         return getConstantsIfAny(stmt, SceneUtil::getIntIfIntConstant);
     }
 
@@ -336,22 +304,34 @@ public class SceneUtil {
     }
 
     /**
-     * @return The container method of the given unit.
+     * @return The container method of the given unit, or null if not found. Resolved on demand, see
+     * StmtContainerIndex.
      */
     public static SootMethod getMethodOf(Unit unit) {
-        if (stmtToMethodMap == null) {
-            stmtToMethodMap = buildStmtToMethodMap();
+        return getStmtContainerIndex().getMethodOf(unit);
+    }
+
+    /**
+     * Records the container method of a statement found by a scan, to be returned by getMethodOf() without lookup.
+     */
+    static void registerMethodOf(Unit unit, SootMethod method) {
+        getStmtContainerIndex().register(unit, method);
+    }
+
+    private static synchronized StmtContainerIndex getStmtContainerIndex() {
+        if (stmtContainerIndex == null) {
+            stmtContainerIndex = new StmtContainerIndex();
         }
-        return stmtToMethodMap.get(unit);
+        return stmtContainerIndex;
     }
 
     /**
-     * Builds a map from all statements in the analysis classpath to their containing methods. Only methods reachable
-     * through the call graph are included in this map.
+     * Clears the state bound to the current Scene.
      */
-    private static Map<Unit, SootMethod> buildStmtToMethodMap() {
-        Map<Unit, SootMethod> result = new HashMap<>();
-        traverseClasses(Scene.v().getClasses(), null, result::put);
-        return result;
+    public static synchronized void reset() {
+        if (stmtContainerIndex != null) {
+            logger.debug(stmtContainerIndex.toString());
+        }
+        stmtContainerIndex = null;
     }
 }
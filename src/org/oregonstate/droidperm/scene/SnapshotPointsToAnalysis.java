@@ -0,0 +1,155 @@
+package org.oregonstate.droidperm.scene;
+
+import soot.*;
+import soot.jimple.ClassConstant;
+import soot.toolkits.scalar.Pair;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Points-to analysis restored from a CallGraphSnapshot. Only answers the queries DroidPerm performs, precomputed when
+ * the snapshot was saved:
+ * <ul>
+ * <li>reachingObjects() for targets of virtual invokes, with and without context.</li>
+ * <li>PointsToUtil.getPointsToWithFallback() for String and String[] arguments of invokes.</li>
+ * </ul>
+ * Other queries return empty sets. Queries that have thrown an exception in the original analysis throw an exception
+ * here too.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class SnapshotPointsToAnalysis implements PointsToAnalysis {
+
+    static final SnapshotPointsToSet EMPTY_SET = new SnapshotPointsToSet(Collections.emptySet(), null);
+
+    /**
+     * Marks queries that have thrown an exception in the original analysis.
+     */
+    static final SnapshotPointsToSet FAILED = new SnapshotPointsToSet(Collections.emptySet(), null);
+
+    /**
+     * Keys are local and context. Context is null for context-insensitive queries.
+     */
+    private final Map<Pair<Local, Unit>, SnapshotPointsToSet> reachingObjects = new HashMap<>();
+    private final Map<Pair<Local, Unit>, SnapshotPointsToSet> reachingObjectsWithFallback = new HashMap<>();
+
+    void putReachingObjects(Local local, Unit context, SnapshotPointsToSet set, boolean withFallback) {
+        (withFallback ? reachingObjectsWithFallback : reachingObjects).put(new Pair<>(local, context), set);
+    }
+
+    int size() {
+        return reachingObjects.size() + reachingObjectsWithFallback.size();
+    }
+
+    /**
+     * Same contract as PointsToUtil.getPointsToWithFallback(): null if the original query failed.
+     */
+    public PointsToSet getPointsToWithFallback(Local local, Unit context) {
+        SnapshotPointsToSet set = reachingObjectsWithFallback.getOrDefault(new Pair<>(local, context), EMPTY_SET);
+        return set != FAILED ? set : null;
+    }
+
+    private PointsToSet lookup(Local local, Unit context) {
+        SnapshotPointsToSet set = reachingObjects.getOrDefault(new Pair<>(local, context), EMPTY_SET);
+        if (set == FAILED) {
+            throw new RuntimeException("Points-to query failed when snapshot was saved: " + local + " in context "
+                    + context);
+        }
+        return set;
+    }
+
+    @Override
+    public PointsToSet reachingObjects(Local l) {
+        return lookup(l, null);
+    }
+
+    @Override
+    public PointsToSet reachingObjects(Context c, Local l) {
+        return c instanceof Unit ? lookup(l, (Unit) c) : EMPTY_SET;
+    }
+
+    @Override
+    public PointsToSet reachingObjects(SootField f) {
+        return EMPTY_SET;
+    }
+
+    @Override
+    public PointsToSet reachingObjects(PointsToSet s, SootField f) {
+        return EMPTY_SET;
+    }
+
+    @Override
+    public PointsToSet reachingObjects(Local l, SootField f) {
+        return EMPTY_SET;
+    }
+
+    @Override
+    public PointsToSet reachingObjects(Context c, Local l, SootField f) {
+        return EMPTY_SET;
+    }
+
+    @Override
+    public PointsToSet reachingObjectsOfArrayElement(PointsToSet s) {
+        return EMPTY_SET;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotPointsToAnalysis: " + reachingObjects.size() + " queries, "
+                + reachingObjectsWithFallback.size() + " queries with fallback";
+    }
+
+    static class SnapshotPointsToSet implements PointsToSet {
+
+        private final Set<Type> types;
+
+        /**
+         * Null if the set contains objects other than string constants, same as in Soot.
+         */
+        private final Set<String> stringConstants;
+
+        SnapshotPointsToSet(Set<Type> types, Set<String> stringConstants) {
+            this.types = types;
+            this.stringConstants = stringConstants;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return types.isEmpty();
+        }
+
+        /**
+         * Approximated through types, allocation sites are not part of the snapshot.
+         */
+        @Override
+        public boolean hasNonEmptyIntersection(PointsToSet other) {
+            return !Collections.disjoint(types, other.possibleTypes());
+        }
+
+        @Override
+        public Set<Type> possibleTypes() {
+            return types;
+        }
+
+        @Override
+        public Set<String> possibleStringConstants() {
+            return stringConstants;
+        }
+
+        /**
+         * Not part of the snapshot.
+         */
+        @Override
+        public Set<ClassConstant> possibleClassConstants() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return types.toString();
+        }
+    }
+}
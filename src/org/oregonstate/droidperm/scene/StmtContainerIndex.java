@@ -0,0 +1,118 @@
+package org.oregonstate.droidperm.scene;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.*;
+import soot.jimple.toolkits.callgraph.Edge;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-demand index from statements to their containing methods, replacing a map over all statements in the Scene.
+ * Containers are resolved, in order:
+ * <ol>
+ * <li>From statements already resolved, or registered by scene scans through register().</li>
+ * <li>From the source of call graph edges out of the statement, if there is a call graph.</li>
+ * <li>By scanning method bodies class by class, application classes first, until the statement is found. The statement
+ * map of each scanned class is kept through a soft reference, so it can be reclaimed under memory pressure and rebuilt
+ * when needed.</li>
+ * </ol>
+ * An instance is bound to the Scene at creation time.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+class StmtContainerIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StmtContainerIndex.class);
+
+    private final Scene scene = Scene.v();
+
+    private final Map<Unit, SootMethod> knownContainers = new ConcurrentHashMap<>();
+
+    /**
+     * Classes in scan order, computed at first scan.
+     */
+    private List<SootClass> scanOrder;
+
+    private final Map<SootClass, SoftReference<Map<Unit, SootMethod>>> classIndexes = new HashMap<>();
+
+    private int nrCallGraphHits;
+    private int nrClassScans;
+
+    /**
+     * @return the container method, or null if unit is null or not found in Scene.
+     */
+    SootMethod getMethodOf(Unit unit) {
+        if (unit == null) {
+            return null;
+        }
+        SootMethod method = knownContainers.get(unit);
+        if (method != null) {
+            return method;
+        }
+        method = scene.hasCallGraph() ? getMethodFromCallGraph(unit) : null;
+        if (method == null) {
+            method = scanForMethodOf(unit);
+        }
+        if (method != null) {
+            knownContainers.put(unit, method);
+        }
+        return method;
+    }
+
+    /**
+     * Records the container of a statement already known by the caller.
+     */
+    void register(Unit unit, SootMethod method) {
+        knownContainers.put(unit, method);
+    }
+
+    private SootMethod getMethodFromCallGraph(Unit unit) {
+        Iterator<Edge> edges = scene.getCallGraph().edgesOutOf(unit);
+        if (edges.hasNext()) {
+            synchronized (this) {
+                nrCallGraphHits++;
+            }
+            return edges.next().src();
+        }
+        return null;
+    }
+
+    private synchronized SootMethod scanForMethodOf(Unit unit) {
+        if (scanOrder == null) {
+            //copy, Scene classes might change while bodies are retrieved
+            Set<SootClass> classes = new LinkedHashSet<>(scene.getApplicationClasses());
+            classes.addAll(scene.getClasses());
+            scanOrder = new ArrayList<>(classes);
+        }
+        for (SootClass sootClass : scanOrder) {
+            SootMethod method = getClassIndex(sootClass).get(unit);
+            if (method != null) {
+                return method;
+            }
+        }
+        logger.debug("Container method not found for " + unit);
+        return null;
+    }
+
+    private Map<Unit, SootMethod> getClassIndex(SootClass sootClass) {
+        SoftReference<Map<Unit, SootMethod>> ref = classIndexes.get(sootClass);
+        Map<Unit, SootMethod> index = ref != null ? ref.get() : null;
+        if (index == null) {
+            nrClassScans++;
+            Map<Unit, SootMethod> newIndex = new HashMap<>();
+            SceneUtil.traverseClasses(Collections.singletonList(sootClass), null, newIndex::put);
+            classIndexes.put(sootClass, new SoftReference<>(newIndex));
+            index = newIndex;
+        }
+        return index;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StmtContainerIndex: known statements " + knownContainers.size() + ", call graph hits "
+                + nrCallGraphHits + ", class scans " + nrClassScans;
+    }
+}
@@ -6,6 +6,8 @@ import com.google.common.collect.SetMultimap;
 import org.oregonstate.droidperm.perm.miner.jaxb_out.PermissionDef;
 import org.oregonstate.droidperm.util.MyCollectors;
 import org.oregonstate.droidperm.util.PrintUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import soot.Scene;
 import soot.SootField;
 import soot.SootMethod;
@@ -24,6 +26,8 @@ import java.util.stream.Collectors;
  */
 public class UndetectedItemsUtil {
 
+    private static final Logger logger = LoggerFactory.getLogger(UndetectedItemsUtil.class);
+
     /**
      * From resolved statements, filter out what's in detected and what's not accepted by classpathFilter.
      */
@@ -93,7 +97,9 @@ public class UndetectedItemsUtil {
         sceneResult.requesters = HashMultimap.create();
         Multimap<SootField, Stmt> undetectedFieldSens = HashMultimap.create();
 
-        SceneUtil.traverseClasses(Scene.v().getApplicationClasses(), classpathFilter,
+        //one scanner for both scans, to share abstract dispatch results
+        SceneScanner scanner = new SceneScanner();
+        scanner.scanClasses(Scene.v().getApplicationClasses(), classpathFilter,
                 SceneUtil.createMethodUsagesCollector(scenePermDef.getSceneMethodSensitives(), undetectedMethodSens),
                 SceneUtil.createMethodUsagesCollector(scenePermDef.getPermCheckers(), sceneResult.checkers),
                 SceneUtil.createMethodUsagesCollector(scenePermDef.getPermRequesters(), sceneResult.requesters),
@@ -110,7 +116,7 @@ public class UndetectedItemsUtil {
             sceneResult.requestersCHA = HashMultimap.create();
             Multimap<SootField, Stmt> undetectedFieldSensCHA = HashMultimap.create();
 
-            SceneUtil.traverseCHACallGraph(dummyMain, classpathFilter,
+            scanner.scanCHACallGraph(dummyMain, classpathFilter,
                     SceneUtil.createMethodUsagesCollector(scenePermDef.getSceneMethodSensitives(),
                             undetectedMethodSensCHA),
                     SceneUtil.createMethodUsagesCollector(scenePermDef.getPermCheckers(), sceneResult.checkersCHA),
@@ -144,6 +150,8 @@ public class UndetectedItemsUtil {
                     sceneResult.permToReferredFieldSensMapCHA, scenePermDef);
         }
 
+        logger.info("DP: " + scanner);
+
         //these have to be computed last because they may be modified by CHA items logic above
         sceneResult.permToReferredMethodSensMap =
                 undetectedMethodSens.keySet().stream().collect(Collectors.groupingBy(
@@ -25,15 +25,38 @@ public class CallbackTypeUtil {
             .putAll("Service", Collections.singletonList("android.app.Service"))
             .build();
 
-    private static Multimap<String, SootClass> componentTypes = componentDefs.keySet().stream().collect(
-            MyCollectors.toMultimap(
-                    comp -> comp,
-                    comp -> componentDefs.get(comp).stream().filter(Scene.v()::containsClass)
-                            .map(Scene.v()::getSootClass)
-            ));
+    /**
+     * Resolved from componentDefs in componentTypesScene. Resolved again when Scene changes, so multiple apps might be
+     * analyzed in the same JVM.
+     */
+    private static Multimap<String, SootClass> componentTypes;
+    private static Scene componentTypesScene;
+
+    private static synchronized Multimap<String, SootClass> getComponentTypes() {
+        if (componentTypesScene != Scene.v()) {
+            Scene scene = Scene.v();
+            componentTypes = componentDefs.keySet().stream().collect(
+                    MyCollectors.toMultimap(
+                            comp -> comp,
+                            comp -> componentDefs.get(comp).stream().filter(scene::containsClass)
+                                    .map(scene::getSootClass)
+                    ));
+            componentTypesScene = scene;
+        }
+        return componentTypes;
+    }
+
+    /**
+     * Releases component types of the previous Scene.
+     */
+    public static synchronized void reset() {
+        componentTypes = null;
+        componentTypesScene = null;
+    }
 
     public static String getCallbackType(MethodOrMethodContext callback) {
         SootClass cls = callback.method().getDeclaringClass();
+        Multimap<String, SootClass> componentTypes = getComponentTypes();
         List<SootClass> superclasses = Scene.v().getActiveHierarchy().getSuperclassesOfIncluding(cls);
         while (cls != null) {
             for (String compType : componentTypes.keySet()) {
@@ -30,8 +30,7 @@ public class CheckerAnalysis {
     private String captionSingular;
     private String captionPlural;
 
-    //toperf holders for checkers and sensitives could be combined into one. One traversal could produce both.
-    //this is actually required for flow-sensitive analysis.
+    //Holders for checkers and sensitives are views over the same outflow graph.
     @SuppressWarnings("FieldCanBeLocal")
     private ContextSensOutflowCPHolder checkerPathsHolder;
     /**
@@ -49,7 +48,7 @@ public class CheckerAnalysis {
 
     private SetMultimap<MethodOrMethodContext, String> callbackToCheckedPermsMap;
 
-    public CheckerAnalysis(MethodOrMethodContext dummyMainMethod, LinkedHashSet<Edge> checkerEdges,
+    public CheckerAnalysis(OutflowGraph outflowGraph, LinkedHashSet<Edge> checkerEdges,
                            ClasspathFilter classpathFilter, CallGraphPermDefService cgService,
                            SetMultimap<MethodOrMethodContext, String> callbackToRequiredPermsMap,
                            String captionSingular, String captionPlural) {
@@ -58,7 +57,7 @@ public class CheckerAnalysis {
         this.checkerEdges = checkerEdges;
         this.captionSingular = captionSingular;
         this.captionPlural = captionPlural;
-        checkerPathsHolder = new ContextSensOutflowCPHolder(dummyMainMethod, checkerEdges, classpathFilter, cgService);
+        checkerPathsHolder = new ContextSensOutflowCPHolder(outflowGraph, checkerEdges, cgService);
         callbackToCheckedPermsMap = buildCallbackToCheckedPermsMap(checkerPathsHolder);
         permsToCheckersMap = buildPermsToCheckersMap(checkerEdges);
         sometimesNotCheckedPerms = buildSometimesNotCheckedPerms(callbackToRequiredPermsMap);
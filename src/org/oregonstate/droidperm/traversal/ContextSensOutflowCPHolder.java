@@ -1,14 +1,11 @@
 package org.oregonstate.droidperm.traversal;
 
 import com.google.common.collect.*;
-import org.oregonstate.droidperm.scene.ClasspathFilter;
 import org.oregonstate.droidperm.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import soot.*;
-import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.Stmt;
-import soot.jimple.spark.geom.geomPA.GeomPointsTo;
 import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.toolkits.scalar.Pair;
@@ -17,6 +14,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 /**
+ * View over the shared OutflowGraph, for one category of targets: sensitives, checkers or requesters.
+ *
  * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 3/28/2016.
  */
 public class ContextSensOutflowCPHolder {
@@ -25,22 +24,20 @@ public class ContextSensOutflowCPHolder {
 
     protected MethodOrMethodContext dummyMainMethod;
     protected Set<Edge> initSensEdges;
+
     /**
-     * Methods ignored by the outflow algorithm
+     * initSensEdges and their parents. Only these edges are indexed in trackedToCallbacksMap.
      */
-    private ClasspathFilter classpathFilter;
+    private Set<Edge> trackedEdges;
     private final CallGraphPermDefService cgService;
 
-    protected final PointsToAnalysis pointsToAnalysis;
     protected final CallGraph callGraph = Scene.v().getCallGraph();
 
-    private long time = System.currentTimeMillis();
-
     /**
      * BiMap from callback methods to edges that call those methods. For each callback method there's only one
      * corresponding edge - the first.
      * <p>
-     * Contains all callbacks, not only those having sensitives.
+     * Contains all callbacks, not only those having sensitives. Shared with outflowGraph.
      */
     private BiMap<MethodOrMethodContext, Edge> uiCallbacksBiMap;
 
@@ -50,35 +47,44 @@ public class ContextSensOutflowCPHolder {
      */
     private Set<Edge> reachedSensEdges = new HashSet<>();
 
-    //todo investigate using a true call graph for outflows, instead of these maps.
-    //Potentially will improve performance, since callbackToOutflowTable contains a lot of repetition.
-    //advantage: efficient navigation both upwards and downwards.
-    // Could use MethodOrMethodContext, or downright MethodContext
-    // to distinguish between edges in the Soot CG and edges in my outflow CG.
     /**
-     * Table where rows represent callbacks and row contents are outflows, as breadth-first trees in the call graph.
-     * <p>
-     * row = callback, value = outflow of that callback.
-     * <p>
-     * column = node in the outflow,
+     * Outflow graph shared by all callbacks and by all holders. Reachability queries are answered from it.
+     */
+    private final OutflowGraph outflowGraph;
+
+    /**
+     * Map from callbacks to their outflows, as breadth-first trees in the call graph. Only callbacks that reach
+     * sensitives are included. Trees store node ids of outflowGraph, instead of maps from nodes to parent nodes.
      * <p>
-     * value = parent node in the outflow for given callback and node. Both node and parent node context-sensitive.
+     * Insertion order is the order of callbacks in uiCallbacksBiMap.
      */
-    private Table<MethodOrMethodContext, Edge, Edge> callbackToOutflowTable;
+    private Map<MethodOrMethodContext, OutflowTree> callbackToOutflowMap;
 
     /**
-     * From each Edge in the call graph, the set of sensitives it reaches.
+     * Reached sensitives, indexed by a dense id used in nodesToReachablePresens.
+     */
+    private List<Edge> presensList;
+    private Map<Edge, Integer> presensToIdMap;
+
+    /**
+     * From each node in outflowGraph, indexed by node id, the set of sensitives it reaches, as presens ids. Null for
+     * nodes that reach no sensitives. Identical sets are shared.
      * <p>
      * todo Do not include sensitives checked by try-catch. this would require storing sensitives in context.
-     * <p>
-     * toperf this collection is likely a huge memory hog.
      */
-    private SetMultimap<Edge, Edge> nodesToReachablePresensMap;
+    private BitSet[] nodesToReachablePresens;
 
     /**
-     * Map from sensitives to sets of callbacks.
+     * Reachable callbacks, indexed by a dense id used in trackedToCallbacksMap.
      */
-    private SetMultimap<Edge, MethodOrMethodContext> presensToCallbacksMap;
+    private List<MethodOrMethodContext> reachableCallbackList = new ArrayList<>();
+    private Map<MethodOrMethodContext, Integer> reachableCallbackToIdMap = new HashMap<>();
+
+    /**
+     * Inverted index from sensitives and their parent edges to the ids of reachable callbacks that reach them. Built
+     * during traversal.
+     */
+    private Map<Edge, BitSet> trackedToCallbacksMap = new HashMap<>();
 
     /**
      * Table from Callback-sensitive pairs to a boolean value, indicating whether the path from callback to sensitive is
@@ -86,212 +92,146 @@ public class ContextSensOutflowCPHolder {
      */
     private Table<MethodOrMethodContext, Edge, Boolean> ambigousPathsTable = HashBasedTable.create();
 
-    public ContextSensOutflowCPHolder(MethodOrMethodContext dummyMainMethod, Set<Edge> sensEdges,
-                                      ClasspathFilter classpathFilter, CallGraphPermDefService cgService) {
-        this.dummyMainMethod = dummyMainMethod;
+    /**
+     * @param outflowGraph must track sensEdges and their parents, see OutflowGraph.withParentEdges().
+     */
+    public ContextSensOutflowCPHolder(OutflowGraph outflowGraph, Set<Edge> sensEdges,
+                                      CallGraphPermDefService cgService) {
+        this.outflowGraph = outflowGraph;
+        this.dummyMainMethod = outflowGraph.getDummyMainMethod();
+        this.uiCallbacksBiMap = outflowGraph.getUiCallbacksBiMap();
         this.initSensEdges = sensEdges;
-        this.classpathFilter = classpathFilter;
         this.cgService = cgService;
 
-        pointsToAnalysis = Scene.v().getPointsToAnalysis();
-        if (pointsToAnalysis.getClass() != GeomPointsTo.class) {
-            logger.warn("ContextSensOutflowCPHolder is slow with PointsTo algorithms other than GEOM");
-        }
-
-        callbackToOutflowTable = buildCallbackToOutflowMap();
-        presensToCallbacksMap = buildSensitiveInCToCallbacksMap();
-        nodesToReachablePresensMap = buildNodesToReachablePresensMap();
+        //Parents of sensitives are tracked too, they are queried by getParentEdges() and getReachingCallbacks().
+        trackedEdges = OutflowGraph.withParentEdges(initSensEdges);
+        callbackToOutflowMap = buildCallbackToOutflowMap();
+        nodesToReachablePresens = buildNodesToReachablePresens();
     }
 
-    private Table<MethodOrMethodContext, Edge, Edge> buildCallbackToOutflowMap() {
-        uiCallbacksBiMap = StreamUtil.asStream(callGraph.edgesOutOf(dummyMainMethod))
-                .collect(Collectors.toMap(
-                        Edge::getTgt,
-                        edge -> edge,
-
-                        //if there are multiple incoming edges for the same callback, we'll only select the first
-                        (edge1, edge2) -> edge1,
-                        HashBiMap::create
-                ));
-        logger.info("\n\nTotal callbacks: " + uiCallbacksBiMap.size() + "\n");
-
-        Table<MethodOrMethodContext, Edge, Edge> table = HashBasedTable.create();
-        for (MethodOrMethodContext callback : uiCallbacksBiMap.keySet()) {
-            Map<Edge, Edge> outflow = getBreadthFirstOutflow(uiCallbacksBiMap.get(callback));
-            if (!Sets.intersection(outflow.keySet(), initSensEdges).isEmpty()) {
-                table.row(callback).putAll(outflow);
+    /**
+     * Callbacks are traversed in parallel if outflowGraph has a pool. Results are merged in callback order.
+     */
+    private Map<MethodOrMethodContext, OutflowTree> buildCallbackToOutflowMap() {
+        List<MethodOrMethodContext> callbacks = new ArrayList<>(uiCallbacksBiMap.keySet());
+        List<CallbackOutflow> outflows = outflowGraph.mapInOrder(callbacks, this::computeCallbackOutflow);
+
+        Map<MethodOrMethodContext, OutflowTree> result = new LinkedHashMap<>();
+        for (int i = 0; i < callbacks.size(); i++) {
+            MethodOrMethodContext callback = callbacks.get(i);
+            CallbackOutflow outflow = outflows.get(i);
+            if (outflow.tree != null) {
+                reachedSensEdges.addAll(outflow.reachedSens);
+                result.put(callback, outflow.tree);
+                recordReachingCallback(callback, outflow.reachedTracked);
             }
-
-            long newTime = System.currentTimeMillis();
-            logger.info("DP: Callback processed: " + callback + " in " + (newTime - time) / 1E3 + " sec");
-            time = newTime;
+            logger.info("DP: Callback processed: " + callback + " in " + outflow.time / 1E3 + " sec");
         }
 
-        return table;
+        return result;
     }
 
     /**
-     * Produces the outflow tree starting from the root method, by breadth-first traversal.
-     *
-     * @return A map from nodes in the outflow to their parent.
+     * Executed in traversal threads, must not modify the state of this object.
      */
-    private Map<Edge, Edge> getBreadthFirstOutflow(Edge callbackEdge) {
-        Queue<Edge> queue = new ArrayDeque<>();
-        Set<Edge> traversed = new HashSet<>();
-
-        Map<Edge, Edge> outflow = new HashMap<>();
-        queue.add(callbackEdge);
-        traversed.add(callbackEdge);
-
-        for (Edge crntEdge = queue.poll(); crntEdge != null; crntEdge = queue.poll()) {
-            final Edge srcEdge = crntEdge; //to make lambda expressions happy
-            MethodOrMethodContext srcMeth = srcEdge.getTgt();
-            if (srcMeth.method().hasActiveBody() &&
-                    //only analyze the body of methods accepted by classpathFilter
-                    classpathFilter.test(srcMeth.method())) {
-                srcMeth.method().getActiveBody().getUnits().forEach(
-                        (Unit unit) -> getUnitEdgeIterator(unit, srcEdge.srcStmt(), callGraph)
-                                .forEachRemaining((Edge tgtEdge) -> {
-                                    if (!traversed.contains(tgtEdge)) {
-                                        traversed.add(tgtEdge);
-                                        queue.add(tgtEdge);
-                                        outflow.put(tgtEdge, srcEdge);
-                                        if (initSensEdges.contains(tgtEdge)) {
-                                            reachedSensEdges.add(tgtEdge);
-                                        }
-                                    }
-                                }));
-            }
+    private CallbackOutflow computeCallbackOutflow(MethodOrMethodContext callback) {
+        long startTime = System.currentTimeMillis();
+        Edge callbackEdge = uiCallbacksBiMap.get(callback);
+        //graph summaries include targets of other holders
+        Set<Edge> reachedTracked = Sets.intersection(outflowGraph.getReachedTrackedEdges(callbackEdge), trackedEdges);
+        Set<Edge> reachedSens = Sets.intersection(reachedTracked, initSensEdges);
+
+        //the outflow tree is only needed for callbacks that reach sensitives
+        OutflowTree tree = !reachedSens.isEmpty() ? outflowGraph.getBreadthFirstOutflow(callbackEdge) : null;
+        return new CallbackOutflow(reachedTracked, reachedSens, tree, System.currentTimeMillis() - startTime);
+    }
+
+    private void recordReachingCallback(MethodOrMethodContext callback, Set<Edge> reachedTracked) {
+        int callbackId = reachableCallbackList.size();
+        reachableCallbackList.add(callback);
+        reachableCallbackToIdMap.put(callback, callbackId);
+        for (Edge edge : reachedTracked) {
+            trackedToCallbacksMap.computeIfAbsent(edge, key -> new BitSet()).set(callbackId);
         }
-        return outflow;
     }
 
     /**
-     * Iterator over outbound edges of a particular unit (likely method call).
+     * For each callback, sensitives are propagated from children to parents in reverse breadth-first order of the
+     * outflow tree. Propagation stops at edges that call the callback itself, the same way paths are computed.
      */
-    private Iterator<Edge> getUnitEdgeIterator(Unit unit, Stmt context, CallGraph cg) {
-        InstanceInvokeExpr virtualInvoke = PointsToUtil.getVirtualInvokeIfPresent((Stmt) unit);
-        Iterator<Edge> edgesIterator = cg.edgesOutOf(unit);
-
-        //Points-to is safe to compute only when there is at least one edge present.
-        //Also checking for edges presence first is a performance improvement.
-        if (edgesIterator.hasNext() && virtualInvoke != null && context != null) {
-            PointsToSet pointsToSet = getPointsToForOutflows(unit, context);
-            if (pointsToSet == null || pointsToSet.possibleTypes().isEmpty()) {
-                //Computing points-to has thrown an exception or has beed disabled.
-                //Also if possibleTypes() is empty, this might be a case of points-to inconsistency with valid edges.
-                //Disabling points-to refinement for this unit.
-                return edgesIterator;
-            }
+    private BitSet[] buildNodesToReachablePresens() {
+        presensList = new ArrayList<>(reachedSensEdges);
+        presensToIdMap = new HashMap<>();
+        int[] nodeToPresensId = new int[outflowGraph.size()];
+        Arrays.fill(nodeToPresensId, -1);
+        for (int i = 0; i < presensList.size(); i++) {
+            presensToIdMap.put(presensList.get(i), i);
+            nodeToPresensId[outflowGraph.getId(presensList.get(i))] = i;
+        }
 
-            SootMethod staticTargetMethod;
-            try {
-                staticTargetMethod = virtualInvoke.getMethod();
-            } catch (Exception e) {
-                logger.error(e.getMessage());
-                return edgesIterator;
+        BitSet[] result = new BitSet[outflowGraph.size()];
+        for (MethodOrMethodContext callback : callbackToOutflowMap.keySet()) {
+            OutflowTree tree = callbackToOutflowMap.get(callback);
+            BitSet[] treeSets = new BitSet[tree.size()];
+            BitSet rootSet = new BitSet();
+            for (int pos = tree.size() - 1; pos >= 0; pos--) {
+                int nodeId = tree.getNodeIdAt(pos);
+                if (nodeToPresensId[nodeId] != -1) {
+                    treeSets[pos] = treeSets[pos] != null ? treeSets[pos] : new BitSet();
+                    treeSets[pos].set(nodeToPresensId[nodeId]);
+                }
+                if (treeSets[pos] == null) {
+                    continue;
+                }
+                mergeInto(result, nodeId, treeSets[pos]);
+                if (outflowGraph.getEdge(nodeId).getTgt() != callback) {
+                    int parentPos = tree.getParentPosition(pos);
+                    BitSet parentSet = parentPos != OutflowTree.ROOT_POSITION ? treeSets[parentPos] : rootSet;
+                    if (parentSet == null) {
+                        parentSet = treeSets[parentPos] = new BitSet();
+                    }
+                    parentSet.or(treeSets[pos]);
+                }
+                treeSets[pos] = null;
             }
-            Set<Type> pointsToTargetTypes = pointsToSet.possibleTypes();
-            List<SootMethod> pointsToTargetMethods =
-                    HierarchyUtil.resolveHybridDispatch(staticTargetMethod, pointsToTargetTypes);
-
-            //todo: more precise support for fake edges - take into account the changed target.
-            //Fake edges alter the natural mapping between edge.srcStmt() => edge.tgt()
-            //  e.g. the actually invoked method is a different than the one allowed by class hierarchy.
-            //Problems with fake edges:
-            // 1. They alter the invoked method. Ex: Thread.start() => Thread.run().
-            //      edge.srcStmt()...getTgt() != edge.tgt()
-            // 2. They might alter invocation target. Ex: executor.submit(r) => r.run()
-            //      edge.srcStmt()...getBase()
-            //          != actual receiver inside OFCGB.methodToReceivers.get(edge.srcStmt()...getTgt())
-            //      How to get it???
-            //      v1: Get it correctly from OnFlyCallGraphBuilder.
-            //      v2: Hack it for every particular implementation of fake edge.
-
-            //Why context sensitivity works for Thread.start()?
-            //  Current algorithm won't distinguish between 2 statements Thread.start() within the same method,
-            //  but it doesn't matter for the purpose of DroidPerm.
-
-            List<Edge> edges = Lists.newArrayList(edgesIterator);
-            List<Edge> fakeEdges = edges.stream().filter(edge -> edge.kind().isFake()).collect(Collectors.toList());
-
-            //if there are fake edges, filter out all other edges
-            //Exception: for AsyncTask crafted CP edges are better than fake edges.
-            if (!fakeEdges.isEmpty() && fakeEdges.stream().noneMatch(fake -> fake.kind().isAsyncTask())) {
-                return fakeEdges.iterator();
-            } else {
-                return edges.stream()
-                        .filter(edge -> edgeMatchesPointsTo(edge, pointsToTargetMethods))
-                        .iterator();
+            if (!rootSet.isEmpty()) {
+                mergeInto(result, tree.getRootId(), rootSet);
             }
         }
 
-        //default case, anything except virtual method calls
-        return edgesIterator;
-    }
-
-    private boolean edgeMatchesPointsTo(Edge edge, List<SootMethod> pointsToTargetMethods) {
-        //     This is the main case: real edges
-        return pointsToTargetMethods.contains(edge.getTgt().method())
-                //2nd case: fake edges
-                //Fake edges are a hack in Soot for handling async constructs.
-                //If it's a fake edge, include it without comparing to actual targets.
-                //toperf no longer necessary, because if there are fake edges this method won't be called
-                || (edge.kind().isFake());
-                /* Fake edges could essentially be replaced with crafted JDK classes, with one exception:
-                ExecutorService.execute(), or edges of kind EXECUTOR.
-
-                Reason: cannot disable fake edges kind EXECUTOR, because it would require crafting
-                a custom executor.execute() for every implementation of ExecutorService. Those fake edges are still
-                needed when executor.execute() is called directly by the app.
-
-                 The only drawback is a bit uglier paths, due to fake edge being logged instead of a nice crafted one.
-                */
-    }
-
-    private SetMultimap<Edge, MethodOrMethodContext> buildSensitiveInCToCallbacksMap() {
-        return reachedSensEdges.stream().collect(MyCollectors.toMultimap(
-                sensitiveInContext -> sensitiveInContext,
-                sensitiveInContext -> callbackToOutflowTable.rowMap().entrySet().stream()
-                        .filter(cbToOutflowEntry -> cbToOutflowEntry.getValue().containsKey(sensitiveInContext))
-                        .map(Map.Entry::getKey)
-        ));
-    }
-
-    private SetMultimap<Edge, Edge> buildNodesToReachablePresensMap() {
-        SetMultimap<Edge, Edge> result = HashMultimap.create();
-        for (MethodOrMethodContext callback : callbackToOutflowTable.rowKeySet()) {
-            for (Edge presensEdge : reachedSensEdges) {
-                if (callbackToOutflowTable.contains(callback, presensEdge)) {
-                    Edge edge = presensEdge;
-                    //populate the result map across the path from callback to presensEdge
-                    while (edge != null && edge.getTgt() != callback) {
-                        result.put(edge, presensEdge);
-                        edge = callbackToOutflowTable.row(callback).get(edge);
-                    }
-                    if (edge != null) {
-                        result.put(edge, presensEdge);
-                    }
-                }
+        Map<BitSet, BitSet> internedSets = new HashMap<>();
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] != null) {
+                result[i] = internedSets.computeIfAbsent(result[i], key -> key);
             }
         }
         return result;
     }
 
+    private static void mergeInto(BitSet[] sets, int index, BitSet bits) {
+        if (sets[index] == null) {
+            sets[index] = (BitSet) bits.clone();
+        } else {
+            sets[index].or(bits);
+        }
+    }
+
     public void printPathsFromCallbackToSensitive() {
         System.out.println("\nPaths from each callback to each sensitive");
         System.out.println("========================================================================\n");
 
-        for (MethodOrMethodContext callback : callbackToOutflowTable.rowKeySet()) {
+        for (MethodOrMethodContext callback : callbackToOutflowMap.keySet()) {
+            OutflowTree tree = callbackToOutflowMap.get(callback);
             for (Edge sensitiveInContext : reachedSensEdges) {
-                if (callbackToOutflowTable.row(callback).containsKey(sensitiveInContext)) {
-                    printPath(callback, sensitiveInContext, callbackToOutflowTable.row(callback));
+                if (tree.contains(sensitiveInContext)) {
+                    printPath(callback, sensitiveInContext, tree);
                 }
             }
         }
+        logger.info("DP: " + outflowGraph.getRefinementCache());
     }
 
-    private void printPath(MethodOrMethodContext callback, Edge destEdge, Map<Edge, Edge> outflow) {
+    private void printPath(MethodOrMethodContext callback, Edge destEdge, OutflowTree outflow) {
         List<Edge> path = computePathFromOutflow(callback, destEdge, outflow);
         boolean ambiguous = false;
 
@@ -378,32 +318,32 @@ public class ContextSensOutflowCPHolder {
     }
 
     private List<Edge> computePathFromOutflow(MethodOrMethodContext src, Edge dest,
-                                              Map<Edge, Edge> outflow) {
+                                              OutflowTree outflow) {
         List<Edge> path = new ArrayList<>();
         Edge edge = dest;
         while (edge != null && edge.getTgt() != src) {
             path.add(edge);
-            edge = outflow.get(edge);
+            edge = outflow.getParent(edge);
         }
         path.add(edge != null ? edge : null);
         Collections.reverse(path);
         return path;
     }
 
-    protected PointsToSet getPointsToForOutflows(Unit unit, Stmt context) {
-        return PointsToUtil.getPointsToIfVirtualCall(unit, context, pointsToAnalysis);
-    }
-
     protected PointsToSet getPointsToForLogging(Stmt stmt, Stmt context) {
-        return PointsToUtil.getPointsToIfVirtualCall(stmt, context, pointsToAnalysis);
+        return outflowGraph.getPointsToForLogging(stmt, context);
     }
 
     public Set<Edge> getReacheablePresensitives(Edge edge) {
-        return nodesToReachablePresensMap.get(edge);
+        int id = outflowGraph.getId(edge);
+        return id != -1 && nodesToReachablePresens[id] != null
+               ? new BitSetBackedSet<>(nodesToReachablePresens[id], presensList, presensToIdMap)
+               : Collections.emptySet();
     }
 
     public Set<Edge> getCallsToSensitiveFor(MethodOrMethodContext callback) {
-        return Sets.intersection(callbackToOutflowTable.row(callback).keySet(), reachedSensEdges);
+        OutflowTree tree = callbackToOutflowMap.get(callback);
+        return tree != null ? Sets.intersection(tree.getEdges(), reachedSensEdges) : Collections.emptySet();
     }
 
     /**
@@ -415,13 +355,13 @@ public class ContextSensOutflowCPHolder {
      * For methods executed directly inside callback, parent will be the edge from dummy main to callback.
      */
     public Set<Edge> getParentEdges(Edge edge, MethodOrMethodContext callback) {
-        if (!callbackToOutflowTable.contains(callback, edge)) {
+        if (!outflowContains(callback, edge)) {
             return Collections.emptySet();
         }
 
         Iterator<Edge> allParentEdges = callGraph.edgesInto(edge.getSrc());
         return StreamUtil.asStream(allParentEdges)
-                .filter(parentEdge -> (callbackToOutflowTable.contains(callback, parentEdge)
+                .filter(parentEdge -> (outflowContains(callback, parentEdge)
                         || edge.getSrc() == callback))
                 .collect(Collectors.toSet());
     }
@@ -436,12 +376,15 @@ public class ContextSensOutflowCPHolder {
      * We also sort the callbacks by their class name followed by method declaration line number.
      */
     public Set<MethodOrMethodContext> getSortedReachableCallbacks() {
-        return callbackToOutflowTable.rowKeySet().stream().sorted(SortUtil.methodOrMCComparator)
+        return callbackToOutflowMap.keySet().stream().sorted(SortUtil.methodOrMCComparator)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
     Set<MethodOrMethodContext> getReachingCallbacks(Edge edge) {
-        return presensToCallbacksMap.get(edge);
+        BitSet callbackIds = trackedToCallbacksMap.get(edge);
+        return callbackIds != null
+               ? new BitSetBackedSet<>(callbackIds, reachableCallbackList, reachableCallbackToIdMap)
+               : Collections.emptySet();
     }
 
     /**
@@ -454,7 +397,17 @@ public class ContextSensOutflowCPHolder {
         Edge edge = edgeParentPair.getO1();
         Edge parent = edgeParentPair.getO2();
         Edge target = (parent != null && parent.getSrc() != dummyMainMethod) ? parent : edge;
-        return callbackToOutflowTable.column(target).keySet();
+        return getReachingCallbacks(target);
+    }
+
+    /**
+     * Answered from trackedToCallbacksMap, valid for sensitives and their parent edges. Only callbacks that reach
+     * sensitives have an outflow.
+     */
+    private boolean outflowContains(MethodOrMethodContext callback, Edge edge) {
+        Integer callbackId = reachableCallbackToIdMap.get(callback);
+        BitSet callbackIds = trackedToCallbacksMap.get(edge);
+        return callbackId != null && callbackIds != null && callbackIds.get(callbackId);
     }
 
     public boolean isPathAmbiguous(MethodOrMethodContext callback, Edge sensInContext) {
@@ -464,4 +417,25 @@ public class ContextSensOutflowCPHolder {
     public Set<Edge> getReachedSensEdges() {
         return reachedSensEdges;
     }
+
+    /**
+     * Traversal result for one callback.
+     */
+    private static class CallbackOutflow {
+        private final Set<Edge> reachedTracked;
+        private final Set<Edge> reachedSens;
+
+        /**
+         * Outflow tree, or null if callback reaches no sensitives.
+         */
+        private final OutflowTree tree;
+        private final long time;
+
+        private CallbackOutflow(Set<Edge> reachedTracked, Set<Edge> reachedSens, OutflowTree tree, long time) {
+            this.reachedTracked = reachedTracked;
+            this.reachedSens = reachedSens;
+            this.tree = tree;
+            this.time = time;
+        }
+    }
 }
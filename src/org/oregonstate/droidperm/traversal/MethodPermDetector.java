@@ -2,8 +2,10 @@ package org.oregonstate.droidperm.traversal;
 
 import com.google.common.collect.*;
 import org.oregonstate.droidperm.debug.DebugUtil;
+import org.oregonstate.droidperm.jaxb.JaxbBinaryCodec;
 import org.oregonstate.droidperm.jaxb.JaxbCallback;
 import org.oregonstate.droidperm.jaxb.JaxbCallbackList;
+import org.oregonstate.droidperm.jaxb.JaxbCallbackListWriter;
 import org.oregonstate.droidperm.jaxb.JaxbStmt;
 import org.oregonstate.droidperm.jaxb.JaxbUtil;
 import org.oregonstate.droidperm.main.DroidPermMain;
@@ -11,6 +13,7 @@ import org.oregonstate.droidperm.scene.*;
 import org.oregonstate.droidperm.sens.DPProcessManifest;
 import org.oregonstate.droidperm.sens.SensitiveCollectorService;
 import org.oregonstate.droidperm.util.CallGraphUtil;
+import org.oregonstate.droidperm.util.HierarchyUtil;
 import org.oregonstate.droidperm.util.MyCollectors;
 import org.oregonstate.droidperm.util.PrintUtil;
 import org.oregonstate.droidperm.util.SortUtil;
@@ -22,11 +25,14 @@ import soot.Scene;
 import soot.jimple.Stmt;
 import soot.jimple.toolkits.callgraph.Edge;
 
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -44,7 +50,7 @@ public class MethodPermDetector {
 
     private ClasspathFilter classpathFilter;
 
-    public static final MethodOrMethodContext dummyMainMethod = getDummyMain();
+    private final MethodOrMethodContext dummyMainMethod;
 
     private CheckerAnalysis checkerAnalysis;
     private CheckerAnalysis requestAnalysis;
@@ -53,7 +59,6 @@ public class MethodPermDetector {
     private ContextSensOutflowCPHolder sensitivePathsHolder;
 
     private SceneAnalysisResult sceneResult;
-    private JaxbCallbackList jaxbData;
 
     @SuppressWarnings("FieldCanBeLocal")
     private long startTime;
@@ -73,6 +78,7 @@ public class MethodPermDetector {
         this.classpathFilter = classpathFilter;
         this.cgService = new CallGraphPermDefService(scenePermDef);
         this.manifest = new DPProcessManifest(apkFile);
+        this.dummyMainMethod = getDummyMain();
     }
 
     public void analyzeAndPrint() throws Exception {
@@ -89,31 +95,40 @@ public class MethodPermDetector {
     }
 
     private void analyze() throws Exception {
-        SceneUtil.getMethodOf(null);//triggering stmt to method map initialziation
-
-        long currentTime = System.currentTimeMillis();
-        System.out.println("\n\nDroidPerm stmt to method map build time: "
-                + (currentTime - lastStepTime) / 1E3 + " seconds");
-        lastStepTime = currentTime;
-
         if (DroidPermMain.augmentCallGraph) {
             CallGraphUtil.augmentCGWithSafeEdges(classpathFilter);
         }
 
-        logger.info("Processing sensitives");
+        logger.info("Building outflow graph");
         sensEdges = cgService.buildSensEdges();
-        sensitivePathsHolder = new ContextSensOutflowCPHolder(dummyMainMethod, sensEdges, classpathFilter, cgService);
-        SetMultimap<MethodOrMethodContext, String> callbackToRequiredPermsMap = buildCallbackToRequiredPermsMap();
-
-        logger.info("Processing checkers");
         LinkedHashSet<Edge> checkerEdges = CallGraphUtil.getEdgesInto(scenePermDef.getPermCheckers());
-        checkerAnalysis = new CheckerAnalysis(dummyMainMethod, checkerEdges, classpathFilter, cgService,
-                callbackToRequiredPermsMap, "Checker", "Checkers");
-
-        logger.info("Processing requests");
         LinkedHashSet<Edge> requestEdges = CallGraphUtil.getEdgesInto(scenePermDef.getPermRequesters());
-        requestAnalysis = new CheckerAnalysis(dummyMainMethod, requestEdges, classpathFilter, cgService,
-                callbackToRequiredPermsMap, "Request", "Requests");
+        Set<Edge> trackedEdges = new LinkedHashSet<>();
+        trackedEdges.addAll(OutflowGraph.withParentEdges(sensEdges));
+        trackedEdges.addAll(OutflowGraph.withParentEdges(checkerEdges));
+        trackedEdges.addAll(OutflowGraph.withParentEdges(requestEdges));
+
+        ForkJoinPool pool =
+                DroidPermMain.traversalThreads > 1 ? new ForkJoinPool(DroidPermMain.traversalThreads) : null;
+        try {
+            OutflowGraph outflowGraph = new OutflowGraph(dummyMainMethod, trackedEdges, classpathFilter, pool);
+
+            logger.info("Processing sensitives");
+            sensitivePathsHolder = new ContextSensOutflowCPHolder(outflowGraph, sensEdges, cgService);
+            SetMultimap<MethodOrMethodContext, String> callbackToRequiredPermsMap = buildCallbackToRequiredPermsMap();
+
+            logger.info("Processing checkers");
+            checkerAnalysis = new CheckerAnalysis(outflowGraph, checkerEdges, classpathFilter, cgService,
+                    callbackToRequiredPermsMap, "Checker", "Checkers");
+
+            logger.info("Processing requests");
+            requestAnalysis = new CheckerAnalysis(outflowGraph, requestEdges, classpathFilter, cgService,
+                    callbackToRequiredPermsMap, "Request", "Requests");
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
 
         //Section 4: Scene undetected items analysis
         Set<Stmt> sensFieldRefs = this.sensEdges.stream()
@@ -122,15 +137,14 @@ public class MethodPermDetector {
         Set<Edge> detectedRequestEdges = requestAnalysis.getDetectedCheckerEdges();
         sceneResult = UndetectedItemsUtil.sceneAnalysis(sensEdges, sensFieldRefs, detectedCheckEdges,
                 detectedRequestEdges, scenePermDef, classpathFilter, dummyMainMethod.method());
-
-        jaxbData = JaxbUtil.buildJaxbData(this, checkerAnalysis);
+        logger.info("DP: " + HierarchyUtil.getDispatchCacheStats());
     }
 
     private void printResults() throws Exception {
         DebugUtil.logClassesWithCallbacks(sensitivePathsHolder.getUiCallbacks());
         DebugUtil.logFragments(sensitivePathsHolder.getUiCallbacks());
         sensitivePathsHolder.printPathsFromCallbackToSensitive();
-        printReachableSensitivesInCallbackStmts(jaxbData, System.out);
+        writeCallbackStmtResults();
 
         long currentTime = System.currentTimeMillis();
         System.out.println("\n\nDroidPerm reachability analysis execution time: "
@@ -148,21 +162,6 @@ public class MethodPermDetector {
         checkerAnalysis.printCheckersInContext(false);
         printSensitivesInContext(false);
 
-        //Printing to files
-        if (txtOut != null) {
-            try (PrintStream summaryOut = new PrintStream(new FileOutputStream(txtOut))) {
-                printReachableSensitivesInCallbackStmts(jaxbData, summaryOut);
-            }
-        }
-        if (xmlOut != null) {
-            jaxbData.setUndetectedCHADangerousPermDefs(
-                    SensitiveCollectorService.retainDangerousPermissionDefs(sceneResult.permDefsCHA));
-            jaxbData.setUnreachableDangerousPermDefs(
-                    SensitiveCollectorService.retainDangerousPermissionDefs(sceneResult.permDefs));
-            jaxbData.setCompileApi23Plus(scenePermDef.isCompileSdkVersion_23_OrMore());
-            jaxbData.setTargetSdkVersion(manifest.targetSdkVersion());
-            JaxbUtil.save(jaxbData, JaxbCallbackList.class, xmlOut);
-        }
         System.out.println("\n\nDroidPerm checker/sensitive summaries execution time: "
                 + (System.currentTimeMillis() - lastStepTime) / 1E3 + " seconds");
     }
@@ -198,17 +197,66 @@ public class MethodPermDetector {
         ));
     }
 
-    private void printReachableSensitivesInCallbackStmts(JaxbCallbackList data, PrintStream out) {
+    /**
+     * Builds the results for statements inside callbacks and writes them to System.out, txtOut and xmlOut. Each
+     * callback is written to all outputs as soon as it is built, the full list is not kept in memory. Binary xmlOut
+     * cannot be streamed, for it the list is built first.
+     */
+    private void writeCallbackStmtResults() throws Exception {
+        boolean streamXml = xmlOut != null && !JaxbBinaryCodec.isBinaryFile(xmlOut);
+        List<JaxbCallback> binaryOutCallbacks = xmlOut != null && !streamXml ? new ArrayList<>() : null;
+        try (PrintStream summaryOut = txtOut != null ? new PrintStream(new FileOutputStream(txtOut)) : null;
+             JaxbCallbackListWriter xmlWriter = streamXml ? new JaxbCallbackListWriter(xmlOut) : null) {
+            printReachableSensitivesHeader(System.out);
+            if (summaryOut != null) {
+                printReachableSensitivesHeader(summaryOut);
+            }
+            JaxbCallbackList jaxbData = JaxbUtil.buildJaxbData(this, checkerAnalysis, callback -> {
+                printReachableSensitivesInCallbackStmts(callback, System.out);
+                if (summaryOut != null) {
+                    printReachableSensitivesInCallbackStmts(callback, summaryOut);
+                }
+                if (xmlWriter != null) {
+                    try {
+                        xmlWriter.writeCallback(callback);
+                    } catch (JAXBException | XMLStreamException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                if (binaryOutCallbacks != null) {
+                    binaryOutCallbacks.add(callback);
+                }
+            });
+
+            if (xmlOut != null) {
+                jaxbData.setUndetectedCHADangerousPermDefs(
+                        SensitiveCollectorService.retainDangerousPermissionDefs(sceneResult.permDefsCHA));
+                jaxbData.setUnreachableDangerousPermDefs(
+                        SensitiveCollectorService.retainDangerousPermissionDefs(sceneResult.permDefs));
+                jaxbData.setCompileApi23Plus(scenePermDef.isCompileSdkVersion_23_OrMore());
+                jaxbData.setTargetSdkVersion(manifest.targetSdkVersion());
+            }
+            if (xmlWriter != null) {
+                xmlWriter.finish(jaxbData);
+            }
+            if (binaryOutCallbacks != null) {
+                jaxbData.setCallbacks(binaryOutCallbacks);
+                JaxbUtil.save(jaxbData, JaxbCallbackList.class, xmlOut);
+            }
+        }
+    }
+
+    private static void printReachableSensitivesHeader(PrintStream out) {
         out.println("\nOutput for droid-perm-plugin, required permissions for statements directly inside callbacks:");
         out.println("========================================================================");
+    }
 
-        for (JaxbCallback callback : data.getCallbacks()) {
-            out.println("\n" + callback + " :");
-            for (JaxbStmt jaxbStmt : callback.getStmts()) {
-                String checkMsg = jaxbStmt.allGuarded() ? "" : " --- checks INCOMPLETE";
-                out.println("    " + jaxbStmt.getLine() + ": "
-                        + jaxbStmt.getCallFullSignature() + " : " + jaxbStmt.getPermDisplayStrings() + checkMsg);
-            }
+    private static void printReachableSensitivesInCallbackStmts(JaxbCallback callback, PrintStream out) {
+        out.println("\n" + callback + " :");
+        for (JaxbStmt jaxbStmt : callback.getStmts()) {
+            String checkMsg = jaxbStmt.allGuarded() ? "" : " --- checks INCOMPLETE";
+            out.println("    " + jaxbStmt.getLine() + ": "
+                    + jaxbStmt.getCallFullSignature() + " : " + jaxbStmt.getPermDisplayStrings() + checkMsg);
         }
     }
 
@@ -0,0 +1,527 @@
+package org.oregonstate.droidperm.traversal;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Lists;
+import org.oregonstate.droidperm.scene.ClasspathFilter;
+import org.oregonstate.droidperm.scene.SnapshotPointsToAnalysis;
+import org.oregonstate.droidperm.util.BoundedCache;
+import org.oregonstate.droidperm.util.HierarchyUtil;
+import org.oregonstate.droidperm.util.PointsToUtil;
+import org.oregonstate.droidperm.util.StreamUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.*;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.spark.geom.geomPA.GeomPointsTo;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.toolkits.scalar.Pair;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Outflow graph shared by all callbacks. Nodes are call graph edges reachable from the callback edges, numbered
+ * densely in discovery order. The outgoing edges of a node only depend on the node itself (target method and calling
+ * context), so they are computed once, with points-to refinement, and reused by every callback that reaches the node.
+ * <p>
+ * The graph is condensed into strongly connected components. For each component we compute a summary: the set of
+ * tracked edges reachable from it. Identical summaries are shared between components.
+ * <p>
+ * Successors may be computed in parallel, one breadth-first level at a time. Node ids are assigned sequentially after
+ * each level, in the same order as a sequential traversal, so the graph doesn't depend on the number of threads.
+ * <p>
+ * One graph is shared by the holders for sensitives, checkers and requesters. Each holder is a view over it, tracked
+ * edges of all holders are summarized together. Outflow trees are memoized, so a callback is traversed once.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class OutflowGraph {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutflowGraph.class);
+
+    private static final int REFINEMENT_CACHE_SIZE = 100_000;
+
+    /**
+     * Methods ignored by the outflow algorithm
+     */
+    private final ClasspathFilter classpathFilter;
+    private final PointsToAnalysis pointsToAnalysis;
+    private final CallGraph callGraph = Scene.v().getCallGraph();
+    private final MethodOrMethodContext dummyMainMethod;
+
+    /**
+     * Used by parallel traversal, may be null. Only valid during the analysis that created this graph.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * BiMap from callback methods to edges that call those methods. For each callback method there's only one
+     * corresponding edge - the first.
+     * <p>
+     * Contains all callbacks, not only those having sensitives. Callback edges are the roots of the graph.
+     */
+    private final BiMap<MethodOrMethodContext, Edge> uiCallbacksBiMap;
+
+    /**
+     * Graph nodes, indexed by id.
+     */
+    private final List<Edge> nodes = new ArrayList<>();
+    private final Map<Edge, Integer> nodeToIdMap = new HashMap<>();
+
+    /**
+     * Successors of each node, indexed by node id. Order is the same as produced by the call graph for each unit.
+     */
+    private final List<int[]> successors = new ArrayList<>();
+
+    /**
+     * Edges for which reachability summaries are computed, indexed by tracked id.
+     */
+    private final List<Edge> trackedEdges;
+    private final Map<Edge, Integer> trackedToIdMap = new HashMap<>();
+
+    private int[] nodeToComponent;
+
+    /**
+     * For each component, tracked ids reachable from it, including tracked nodes inside the component.
+     */
+    private BitSet[] componentSummaries;
+
+    /**
+     * Refined invokes, by (invoke stmt, context stmt). Bounded, because most entries are only used while computing the
+     * successors of one node.
+     */
+    private final BoundedCache<Pair<Stmt, Stmt>, RefinedInvoke> refinementCache =
+            new BoundedCache<>("Points-to refinement", REFINEMENT_CACHE_SIZE);
+
+    /**
+     * Outflow trees already computed, by root id.
+     */
+    private final Map<Integer, OutflowTree> treesCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param trackedEdges edges for which reachability is summarized: targets of all holders and their parent edges.
+     * @param pool         used to compute successors in parallel. If null, graph is built sequentially.
+     */
+    public OutflowGraph(MethodOrMethodContext dummyMainMethod, Collection<Edge> trackedEdges,
+                        ClasspathFilter classpathFilter, ForkJoinPool pool) {
+        this.dummyMainMethod = dummyMainMethod;
+        this.classpathFilter = classpathFilter;
+        this.pool = pool;
+        this.trackedEdges = new ArrayList<>(new LinkedHashSet<>(trackedEdges));
+        for (int i = 0; i < this.trackedEdges.size(); i++) {
+            trackedToIdMap.put(this.trackedEdges.get(i), i);
+        }
+        pointsToAnalysis = Scene.v().getPointsToAnalysis();
+        if (pointsToAnalysis.getClass() != GeomPointsTo.class
+                && pointsToAnalysis.getClass() != SnapshotPointsToAnalysis.class) {
+            logger.warn("OutflowGraph is slow with PointsTo algorithms other than GEOM");
+        }
+        //hierarchy is lazily created by Scene, make sure it happens before traversal threads start.
+        //Its dispatch caches are filled later, HierarchyUtil.resolveHybridDispatch() holds the Scene lock for that.
+        Scene.v().getActiveHierarchy();
+
+        uiCallbacksBiMap = StreamUtil.asStream(callGraph.edgesOutOf(dummyMainMethod))
+                .collect(Collectors.toMap(
+                        Edge::getTgt,
+                        edge -> edge,
+
+                        //if there are multiple incoming edges for the same callback, we'll only select the first
+                        (edge1, edge2) -> edge1,
+                        HashBiMap::create
+                ));
+        logger.info("\n\nTotal callbacks: " + uiCallbacksBiMap.size() + "\n");
+
+        long time = System.currentTimeMillis();
+        discoverNodes(uiCallbacksBiMap.values());
+        int componentCount = computeComponents();
+        logger.info("DP: Outflow graph built: " + nodes.size() + " nodes, " + componentCount + " components, "
+                + (System.currentTimeMillis() - time) / 1E3 + " sec");
+        logger.info("DP: " + refinementCache);
+        logger.info("DP: " + HierarchyUtil.getHybridDispatchStats());
+    }
+
+    /**
+     * Breadth-first discovery of all nodes reachable from the roots. Successors are computed exactly once per node.
+     */
+    private void discoverNodes(Collection<Edge> rootEdges) {
+        rootEdges.forEach(this::getOrCreateId);
+        int levelStart = 0;
+        while (levelStart < nodes.size()) {
+            int levelEnd = nodes.size();
+            List<List<Edge>> levelSuccessors =
+                    mapInOrder(nodes.subList(levelStart, levelEnd), this::computeSuccessors);
+
+            //merge is sequential, in node order
+            for (List<Edge> succEdges : levelSuccessors) {
+                int[] succIds = new int[succEdges.size()];
+                for (int i = 0; i < succIds.length; i++) {
+                    succIds[i] = getOrCreateId(succEdges.get(i));
+                }
+                successors.add(succIds);
+            }
+            levelStart = levelEnd;
+        }
+    }
+
+    private int getOrCreateId(Edge edge) {
+        Integer id = nodeToIdMap.get(edge);
+        if (id == null) {
+            id = nodes.size();
+            nodes.add(edge);
+            nodeToIdMap.put(edge, id);
+        }
+        return id;
+    }
+
+    /**
+     * All the outbound edges of the target method of this edge, with points-to refinement in the context of this edge.
+     */
+    private List<Edge> computeSuccessors(Edge srcEdge) {
+        MethodOrMethodContext srcMeth = srcEdge.getTgt();
+        if (srcMeth.method().hasActiveBody() &&
+                //only analyze the body of methods accepted by classpathFilter
+                classpathFilter.test(srcMeth.method())) {
+            List<Edge> result = new ArrayList<>();
+            srcMeth.method().getActiveBody().getUnits().forEach(
+                    (Unit unit) -> getUnitEdgeIterator(unit, srcEdge.srcStmt(), callGraph)
+                            .forEachRemaining(result::add));
+            return result;
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Iterative Tarjan algorithm. Components are completed in reverse topological order, so when a component is
+     * completed the summaries of all its successor components are already available.
+     *
+     * @return number of components
+     */
+    private int computeComponents() {
+        int size = nodes.size();
+        nodeToComponent = new int[size];
+        Arrays.fill(nodeToComponent, -1);
+        int[] index = new int[size];
+        Arrays.fill(index, -1);
+        int[] lowLink = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int[] callStack = new int[size];
+        int[] succPos = new int[size];
+
+        List<BitSet> summaries = new ArrayList<>();
+        Map<BitSet, BitSet> internedSummaries = new HashMap<>();
+        int nextIndex = 0;
+
+        for (int start = 0; start < size; start++) {
+            if (index[start] != -1) {
+                continue;
+            }
+            int depth = 0;
+            index[start] = lowLink[start] = nextIndex++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+            callStack[depth++] = start;
+
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+                int[] succ = successors.get(node);
+                if (succPos[node] < succ.length) {
+                    int next = succ[succPos[node]++];
+                    if (index[next] == -1) {
+                        index[next] = lowLink[next] = nextIndex++;
+                        stack[stackSize++] = next;
+                        onStack[next] = true;
+                        callStack[depth++] = next;
+                    } else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+                if (lowLink[node] == index[node]) {
+                    int component = summaries.size();
+                    int firstMember = stackSize;
+                    do {
+                        firstMember--;
+                        onStack[stack[firstMember]] = false;
+                        nodeToComponent[stack[firstMember]] = component;
+                    } while (stack[firstMember] != node);
+
+                    BitSet summary = new BitSet();
+                    for (int i = firstMember; i < stackSize; i++) {
+                        int member = stack[i];
+                        Integer trackedId = trackedToIdMap.get(nodes.get(member));
+                        if (trackedId != null) {
+                            summary.set(trackedId);
+                        }
+                        for (int succMember : successors.get(member)) {
+                            int succComponent = nodeToComponent[succMember];
+                            if (succComponent != component) {
+                                summary.or(summaries.get(succComponent));
+                            }
+                        }
+                    }
+                    stackSize = firstMember;
+                    summaries.add(internedSummaries.computeIfAbsent(summary, key -> key));
+                }
+            }
+        }
+        componentSummaries = summaries.toArray(new BitSet[summaries.size()]);
+        return componentSummaries.length;
+    }
+
+    /**
+     * Iterator over outbound edges of a particular unit (likely method call).
+     */
+    private Iterator<Edge> getUnitEdgeIterator(Unit unit, Stmt context, CallGraph cg) {
+        InstanceInvokeExpr virtualInvoke = PointsToUtil.getVirtualInvokeIfPresent((Stmt) unit);
+        Iterator<Edge> edgesIterator = cg.edgesOutOf(unit);
+
+        //Points-to is safe to compute only when there is at least one edge present.
+        //Also checking for edges presence first is a performance improvement.
+        if (edgesIterator.hasNext() && virtualInvoke != null && context != null) {
+            return getRefinedInvoke((Stmt) unit, context).edges.iterator();
+        }
+
+        //default case, anything except virtual method calls
+        return edgesIterator;
+    }
+
+    /**
+     * Points-to data and refined edges for a virtual invoke that has at least one edge, in the given context.
+     */
+    private RefinedInvoke getRefinedInvoke(Stmt stmt, Stmt context) {
+        return refinementCache.get(new Pair<>(stmt, context), key -> refineInvoke(stmt, context));
+    }
+
+    private RefinedInvoke refineInvoke(Stmt stmt, Stmt context) {
+        InstanceInvokeExpr virtualInvoke = PointsToUtil.getVirtualInvokeIfPresent(stmt);
+        List<Edge> edges = Lists.newArrayList(callGraph.edgesOutOf(stmt));
+
+        //Points-to analysis is not thread-safe, queries are serialized.
+        PointsToSet pointsToSet;
+        Set<Type> pointsToTargetTypes;
+        synchronized (pointsToAnalysis) {
+            pointsToSet = PointsToUtil.getPointsToIfVirtualCall(stmt, context, pointsToAnalysis);
+            pointsToTargetTypes = pointsToSet != null ? pointsToSet.possibleTypes() : null;
+        }
+        if (pointsToTargetTypes == null || pointsToTargetTypes.isEmpty()) {
+            //Computing points-to has thrown an exception or has beed disabled.
+            //Also if possibleTypes() is empty, this might be a case of points-to inconsistency with valid edges.
+            //Disabling points-to refinement for this unit.
+            return new RefinedInvoke(pointsToSet, edges);
+        }
+
+        SootMethod staticTargetMethod;
+        try {
+            staticTargetMethod = virtualInvoke.getMethod();
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+            return new RefinedInvoke(pointsToSet, edges);
+        }
+        List<SootMethod> pointsToTargetMethods =
+                HierarchyUtil.resolveHybridDispatch(staticTargetMethod, pointsToTargetTypes);
+
+        //todo: more precise support for fake edges - take into account the changed target.
+        //Fake edges alter the natural mapping between edge.srcStmt() => edge.tgt()
+        //  e.g. the actually invoked method is a different than the one allowed by class hierarchy.
+        //Problems with fake edges:
+        // 1. They alter the invoked method. Ex: Thread.start() => Thread.run().
+        //      edge.srcStmt()...getTgt() != edge.tgt()
+        // 2. They might alter invocation target. Ex: executor.submit(r) => r.run()
+        //      edge.srcStmt()...getBase()
+        //          != actual receiver inside OFCGB.methodToReceivers.get(edge.srcStmt()...getTgt())
+        //      How to get it???
+        //      v1: Get it correctly from OnFlyCallGraphBuilder.
+        //      v2: Hack it for every particular implementation of fake edge.
+
+        //Why context sensitivity works for Thread.start()?
+        //  Current algorithm won't distinguish between 2 statements Thread.start() within the same method,
+        //  but it doesn't matter for the purpose of DroidPerm.
+
+        List<Edge> fakeEdges = edges.stream().filter(edge -> edge.kind().isFake()).collect(Collectors.toList());
+
+        //if there are fake edges, filter out all other edges
+        //Exception: for AsyncTask crafted CP edges are better than fake edges.
+        if (!fakeEdges.isEmpty() && fakeEdges.stream().noneMatch(fake -> fake.kind().isAsyncTask())) {
+            return new RefinedInvoke(pointsToSet, fakeEdges);
+        } else {
+            return new RefinedInvoke(pointsToSet, edges.stream()
+                    .filter(edge -> edgeMatchesPointsTo(edge, pointsToTargetMethods))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Points-to set of the invocation target of stmt, in the given context. Used for logging paths. Served from
+     * refinementCache when the same invoke was refined during traversal.
+     */
+    PointsToSet getPointsToForLogging(Stmt stmt, Stmt context) {
+        if (context != null && PointsToUtil.getVirtualInvokeIfPresent(stmt) != null
+                && callGraph.edgesOutOf(stmt).hasNext()) {
+            return getRefinedInvoke(stmt, context).pointsTo;
+        }
+        synchronized (pointsToAnalysis) {
+            return PointsToUtil.getPointsToIfVirtualCall(stmt, context, pointsToAnalysis);
+        }
+    }
+
+    BoundedCache<Pair<Stmt, Stmt>, RefinedInvoke> getRefinementCache() {
+        return refinementCache;
+    }
+
+    private boolean edgeMatchesPointsTo(Edge edge, List<SootMethod> pointsToTargetMethods) {
+        //     This is the main case: real edges
+        return pointsToTargetMethods.contains(edge.getTgt().method())
+                //2nd case: fake edges
+                //Fake edges are a hack in Soot for handling async constructs.
+                //If it's a fake edge, include it without comparing to actual targets.
+                //toperf no longer necessary, because if there are fake edges this method won't be called
+                || (edge.kind().isFake());
+                /* Fake edges could essentially be replaced with crafted JDK classes, with one exception:
+                ExecutorService.execute(), or edges of kind EXECUTOR.
+
+                Reason: cannot disable fake edges kind EXECUTOR, because it would require crafting
+                a custom executor.execute() for every implementation of ExecutorService. Those fake edges are still
+                needed when executor.execute() is called directly by the app.
+
+                 The only drawback is a bit uglier paths, due to fake edge being logged instead of a nice crafted one.
+                */
+    }
+
+    /**
+     * Produces the outflow tree starting from the root edge, by breadth-first traversal over the shared successors.
+     * The root itself is not part of the outflow.
+     * <p>
+     * Safe to call from multiple threads. Trees are memoized.
+     */
+    OutflowTree getBreadthFirstOutflow(Edge rootEdge) {
+        int rootId = getId(rootEdge);
+        if (rootId == -1) {
+            return new OutflowTree(this, rootId, new int[0], new int[0]);
+        }
+        OutflowTree tree = treesCache.get(rootId);
+        if (tree == null) {
+            tree = computeBreadthFirstOutflow(rootId);
+            //if 2 threads computed the same tree, the first one is kept
+            OutflowTree previous = treesCache.putIfAbsent(rootId, tree);
+            tree = previous != null ? previous : tree;
+        }
+        return tree;
+    }
+
+    /**
+     * Not memoized, see getBreadthFirstOutflow(). Package-private for benchmarks.
+     */
+    OutflowTree computeBreadthFirstOutflow(int rootId) {
+        BitSet traversed = new BitSet(nodes.size());
+        //queue[0] is the root, tree nodes are queue[1..tail)
+        int[] queue = new int[nodes.size()];
+        int[] parentPositions = new int[nodes.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = rootId;
+        traversed.set(rootId);
+
+        while (head < tail) {
+            int srcPos = head++;
+            for (int tgtId : successors.get(queue[srcPos])) {
+                if (!traversed.get(tgtId)) {
+                    traversed.set(tgtId);
+                    parentPositions[tail] = srcPos - 1;
+                    queue[tail++] = tgtId;
+                }
+            }
+        }
+        return new OutflowTree(this, rootId, Arrays.copyOfRange(queue, 1, tail),
+                Arrays.copyOfRange(parentPositions, 1, tail));
+    }
+
+    /**
+     * @return id of the edge in this graph, or -1 if edge is not in the graph.
+     */
+    int getId(Edge edge) {
+        Integer id = nodeToIdMap.get(edge);
+        return id != null ? id : -1;
+    }
+
+    Edge getEdge(int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * @return all tracked edges in the outflow of fromEdge.
+     */
+    Set<Edge> getReachedTrackedEdges(Edge fromEdge) {
+        Integer fromId = nodeToIdMap.get(fromEdge);
+        if (fromId == null) {
+            return Collections.emptySet();
+        }
+        BitSet summary = componentSummaries[nodeToComponent[fromId]];
+        Set<Edge> result = new LinkedHashSet<>();
+        for (int i = summary.nextSetBit(0); i >= 0; i = summary.nextSetBit(i + 1)) {
+            Edge trackedEdge = trackedEdges.get(i);
+            if (trackedEdge != fromEdge) {
+                result.add(trackedEdge);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Maps the items using the parallel pool of this graph, if any. Results are in the order of items.
+     */
+    <T, R> List<R> mapInOrder(List<T> items, Function<T, R> mapper) {
+        return StreamUtil.mapInOrder(items, mapper, pool);
+    }
+
+    /**
+     * @return the given edges together with all call graph edges into their source methods.
+     */
+    static Set<Edge> withParentEdges(Collection<Edge> edges) {
+        CallGraph cg = Scene.v().getCallGraph();
+        Set<Edge> result = new LinkedHashSet<>(edges);
+        edges.forEach(edge -> cg.edgesInto(edge.getSrc()).forEachRemaining(result::add));
+        return result;
+    }
+
+    MethodOrMethodContext getDummyMainMethod() {
+        return dummyMainMethod;
+    }
+
+    BiMap<MethodOrMethodContext, Edge> getUiCallbacksBiMap() {
+        return uiCallbacksBiMap;
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Result of points-to refinement for one invoke in one context.
+     */
+    static class RefinedInvoke {
+        /**
+         * Null if points-to computation has thrown an exception.
+         */
+        final PointsToSet pointsTo;
+        final List<Edge> edges;
+
+        RefinedInvoke(PointsToSet pointsTo, List<Edge> edges) {
+            this.pointsTo = pointsTo;
+            this.edges = edges;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.oregonstate.droidperm.traversal;
+
+import org.oregonstate.droidperm.util.IntIntHashMap;
+import soot.jimple.toolkits.callgraph.Edge;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Breadth-first tree of a callback outflow, stored with node ids of the outflow graph. Replaces a Map from nodes to
+ * parents.
+ * <p>
+ * Nodes are stored in breadth-first order, so every parent comes before its children. The root is not part of the
+ * tree.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+class OutflowTree {
+
+    private static final int NOT_FOUND = -1;
+
+    /**
+     * Value of parentPositions for nodes whose parent is the root.
+     */
+    static final int ROOT_POSITION = -1;
+
+    private final OutflowGraph graph;
+    private final int rootId;
+
+    /**
+     * Graph ids of the nodes, in breadth-first order.
+     */
+    private final int[] nodes;
+
+    /**
+     * For each node position, the position of its parent. ROOT_POSITION if the parent is the root.
+     */
+    private final int[] parentPositions;
+
+    /**
+     * From graph id to position in nodes.
+     */
+    private final IntIntHashMap positions;
+
+    OutflowTree(OutflowGraph graph, int rootId, int[] nodes, int[] parentPositions) {
+        this.graph = graph;
+        this.rootId = rootId;
+        this.nodes = nodes;
+        this.parentPositions = parentPositions;
+        positions = new IntIntHashMap(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            positions.put(nodes[i], i);
+        }
+    }
+
+    boolean contains(Edge edge) {
+        return getPosition(edge) != NOT_FOUND;
+    }
+
+    /**
+     * @return parent of this edge in the tree, or null if edge is not in the tree.
+     */
+    Edge getParent(Edge edge) {
+        int position = getPosition(edge);
+        if (position == NOT_FOUND) {
+            return null;
+        }
+        int parentPosition = parentPositions[position];
+        return graph.getEdge(parentPosition == ROOT_POSITION ? rootId : nodes[parentPosition]);
+    }
+
+    int getPosition(Edge edge) {
+        return positions.get(graph.getId(edge), NOT_FOUND);
+    }
+
+    int size() {
+        return nodes.length;
+    }
+
+    int getNodeIdAt(int position) {
+        return nodes[position];
+    }
+
+    int getRootId() {
+        return rootId;
+    }
+
+    Edge getEdgeAt(int position) {
+        return graph.getEdge(nodes[position]);
+    }
+
+    int getParentPosition(int position) {
+        return parentPositions[position];
+    }
+
+    /**
+     * @return the nodes of the tree in breadth-first order, as a read-only view.
+     */
+    Set<Edge> getEdges() {
+        return new AbstractSet<Edge>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Edge && OutflowTree.this.contains((Edge) o);
+            }
+
+            @Override
+            public Iterator<Edge> iterator() {
+                return new Iterator<Edge>() {
+                    private int position = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return position < nodes.length;
+                    }
+
+                    @Override
+                    public Edge next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return getEdgeAt(position++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return nodes.length;
+            }
+        };
+    }
+}
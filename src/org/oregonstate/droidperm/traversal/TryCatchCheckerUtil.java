@@ -13,16 +13,16 @@ import java.util.stream.Collectors;
  */
 public class TryCatchCheckerUtil {
 
-    private static final SootClass SECURITY_EXCEPTION_CLS = Scene.v().getSootClass("java.lang.SecurityException");
-
     public static boolean isTryCatchChecked(Edge edge) {
         return getTryCatchCheckedStmts(edge.src()).contains(edge.srcStmt());
     }
 
     private static Set<Unit> getTryCatchCheckedStmts(SootMethod meth) {
         Hierarchy hierarchy = Scene.v().getActiveHierarchy();
+        //not cached in a static field, Scene might change between apps
+        SootClass securityExceptionCls = Scene.v().getSootClass("java.lang.SecurityException");
         return meth.getActiveBody().getTraps().stream()
-                .filter(trap -> hierarchy.isClassSuperclassOfIncluding(trap.getException(), SECURITY_EXCEPTION_CLS))
+                .filter(trap -> hierarchy.isClassSuperclassOfIncluding(trap.getException(), securityExceptionCls))
                 .flatMap(trap -> StreamUtil.asStream(getTrappedUnits(trap, meth)))
                 .collect(Collectors.toSet());
     }
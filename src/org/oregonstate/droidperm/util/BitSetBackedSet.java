@@ -0,0 +1,68 @@
+package org.oregonstate.droidperm.util;
+
+import java.util.*;
+
+/**
+ * Read-only set view over a BitSet of dense ids. Elements are decoded lazily, only when iterated.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class BitSetBackedSet<T> extends AbstractSet<T> {
+
+    private final BitSet bits;
+
+    /**
+     * Elements, indexed by their id.
+     */
+    private final List<T> elements;
+
+    /**
+     * From elements to their id.
+     */
+    private final Map<T, Integer> idMap;
+
+    public BitSetBackedSet(BitSet bits, List<T> elements, Map<T, Integer> idMap) {
+        this.bits = bits;
+        this.elements = elements;
+        this.idMap = idMap;
+    }
+
+    @Override
+    @SuppressWarnings("SuspiciousMethodCalls")
+    public boolean contains(Object o) {
+        Integer id = idMap.get(o);
+        return id != null && bits.get(id);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = bits.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public T next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                T element = elements.get(next);
+                next = bits.nextSetBit(next + 1);
+                return element;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return bits.cardinality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bits.isEmpty();
+    }
+}
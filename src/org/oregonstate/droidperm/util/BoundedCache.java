@@ -0,0 +1,97 @@
+package org.oregonstate.droidperm.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Thread-safe LRU cache with a maximum number of entries. Keeps hit, miss and eviction counters.
+ * <p>
+ * Null values are not supported. Values are computed outside the lock, so the same value might be computed twice by
+ * concurrent threads. The last one is kept.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class BoundedCache<K, V> {
+
+    private final String name;
+    private final int maxSize;
+    private final Map<K, V> map;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BoundedCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+        map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return cached value, or null if absent.
+     */
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        return name + " cache: size " + map.size() + "/" + maxSize + ", hits " + hits + ", misses " + misses
+                + ", evictions " + evictions
+                + (total > 0 ? String.format(", hit rate %.1f%%", hits * 100.0 / total) : "");
+    }
+}
@@ -2,13 +2,10 @@ package org.oregonstate.droidperm.util;
 
 import com.google.common.collect.ImmutableSet;
 import org.oregonstate.droidperm.scene.SceneUtil;
-import soot.Body;
-import soot.MethodOrMethodContext;
-import soot.Scene;
-import soot.SootMethod;
-import soot.jimple.ReturnStmt;
-import soot.jimple.ReturnVoidStmt;
-import soot.jimple.Stmt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.*;
+import soot.jimple.*;
 import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.toolkits.scalar.Pair;
@@ -23,44 +20,73 @@ import java.util.stream.Collectors;
  */
 public class CallGraphUtil {
 
+    private static final Logger logger = LoggerFactory.getLogger(CallGraphUtil.class);
+
+    /**
+     * Adds the edges computed by computeSafeEdges() to the call graph of the Scene.
+     */
     public static void augmentCGWithSafeEdges(Predicate<SootMethod> classpathFilter) {
+        CallGraph cg = Scene.v().getCallGraph();
+        computeSafeEdges(cg, classpathFilter).forEach(cg::addEdge);
+    }
+
+    /**
+     * Edges for invokes without outgoing edges, when the invoke has exactly one possible target through
+     * HierarchyUtil.dispatchInvokeExpr(). Starts from all methods in the call graph, and continues with the targets of
+     * new edges. Each method is scanned once, and only for invokes without edges. The call graph is not modified.
+     * <p>
+     * Edges for a classpathFilter are a subset of edges for a filter that accepts all methods.
+     *
+     * @param classpathFilter bodies of methods rejected by the filter are not scanned. Null means all are scanned.
+     */
+    public static List<Edge> computeSafeEdges(CallGraph cg, Predicate<SootMethod> classpathFilter) {
         if (classpathFilter == null) {
             classpathFilter = meth -> true;
         }
+        long startTime = System.currentTimeMillis();
 
-        CallGraph cg = Scene.v().getCallGraph();
         Set<SootMethod> reached = new HashSet<>();
         Queue<SootMethod> queue = new ArrayDeque<>();
         cg.iterator().forEachRemaining(edge -> {
-            reached.add(edge.tgt());
-            queue.add(edge.tgt());
+            if (reached.add(edge.tgt())) {
+                queue.add(edge.tgt());
+            }
         });
+
+        //new edges are not added to cg, body scans only check edges that existed before
+        List<Edge> newEdges = new ArrayList<>();
+        int nrScannedMethods = 0;
+        int nrUnresolvedInvokes = 0;
+
         for (SootMethod crntMeth = queue.poll(); crntMeth != null; crntMeth = queue.poll()) {
-            if (crntMeth.isConcrete() && crntMeth.hasActiveBody() &&
+            if (!crntMeth.isConcrete() || !crntMeth.hasActiveBody()
                     //only analyze the body of methods accepted by classpathFilter
-                    classpathFilter.test(crntMeth)) {
-                SootMethod crntMethCopy = crntMeth;
-                Body body = SceneUtil.retrieveBody(crntMeth);
-                if (body == null) {
-                    continue;
-                }
-                body.getUnits().forEach(unit -> {
-                    Stmt stmt = (Stmt) unit;
-                    //if this is a method invocation and CG has no edges for it, maybe we can augment it
-                    if (stmt.containsInvokeExpr() && !cg.edgesOutOf(stmt).hasNext()) {
-                        List<SootMethod> invokedMethods = HierarchyUtil.dispatchInvokeExpr(stmt.getInvokeExpr(),
-                                crntMethCopy);
-                        if (invokedMethods.size() == 1) {
-                            SootMethod targetMeth = invokedMethods.get(0);
-                            cg.addEdge(new Edge(body.getMethod(), stmt, targetMeth));
-                            if (reached.add(targetMeth)) {
-                                queue.add(targetMeth);
-                            }
+                    || !classpathFilter.test(crntMeth)) {
+                continue;
+            }
+            nrScannedMethods++;
+            for (Unit unit : crntMeth.getActiveBody().getUnits()) {
+                Stmt stmt = (Stmt) unit;
+                //if this is a method invocation and CG has no edges for it, maybe we can augment it
+                if (stmt.containsInvokeExpr() && !cg.edgesOutOf(stmt).hasNext()) {
+                    nrUnresolvedInvokes++;
+                    //dispatch results are cached by HierarchyUtil
+                    List<SootMethod> invokedMethods = HierarchyUtil.dispatchInvokeExpr(stmt.getInvokeExpr(), crntMeth);
+                    if (invokedMethods.size() == 1) {
+                        SootMethod targetMeth = invokedMethods.get(0);
+                        newEdges.add(new Edge(crntMeth, stmt, targetMeth));
+                        if (reached.add(targetMeth)) {
+                            queue.add(targetMeth);
                         }
                     }
-                });
+                }
             }
         }
+
+        logger.info("DP: Computed " + newEdges.size() + " safe edges, " + nrUnresolvedInvokes
+                + " invokes without edges in " + nrScannedMethods + " methods, time "
+                + (System.currentTimeMillis() - startTime) / 1E3 + " sec");
+        return newEdges;
     }
 
     public static LinkedHashSet<Edge> getEdgesInto(Collection<SootMethod> methods) {
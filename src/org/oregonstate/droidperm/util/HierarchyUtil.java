@@ -3,6 +3,7 @@ package org.oregonstate.droidperm.util;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ListMultimap;
+import org.oregonstate.droidperm.scene.MethodSignatureResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import soot.*;
@@ -10,10 +11,14 @@ import soot.jimple.InvokeExpr;
 import soot.jimple.SpecialInvokeExpr;
 import soot.jimple.infoflow.data.SootMethodAndClass;
 import soot.jimple.toolkits.callgraph.VirtualCalls;
+import soot.toolkits.scalar.Pair;
 import soot.util.ArraySet;
 import soot.util.NumberedString;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -22,7 +27,19 @@ import java.util.stream.Collectors;
 public class HierarchyUtil {
     private static final Logger logger = LoggerFactory.getLogger(HierarchyUtil.class);
 
-    private static Map<SootMethod, List<SootMethod>> invokeDispatchesCache = new HashMap<>();
+    public static final int DEFAULT_DISPATCH_CACHE_SIZE = 100_000;
+
+    /**
+     * Results of abstract dispatch in dispatchInvokeMethod(). Thread-safe and bounded. Cleared when Scene changes,
+     * so multiple apps might be analyzed in the same JVM.
+     */
+    private static volatile BoundedCache<SootMethod, List<SootMethod>> invokeDispatchesCache =
+            new BoundedCache<>("Invoke dispatch", DEFAULT_DISPATCH_CACHE_SIZE);
+
+    /**
+     * Scene for which caches in this class were populated.
+     */
+    private static volatile Scene cachesScene;
 
     private enum AnySubTypeTreatment {
         /**
@@ -85,11 +102,27 @@ public class HierarchyUtil {
 
     private static final AnySubTypeTreatment ANY_SUBTYPE_TREATMENT = AnySubTypeTreatment.ALLOW_VALID;
 
-    private static boolean dispatchExceptionLogged = false;
+    private static volatile boolean dispatchExceptionLogged = false;
+
+    /**
+     * Canonical ids for the type sets received by resolveHybridDispatch(). Points-to sets of many call sites have the
+     * same possible types.
+     */
+    private static final Map<Set<Type>, Integer> typeSetIds = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextTypeSetId = new AtomicInteger();
+
+    /**
+     * Results of resolveHybridDispatch(), by (static target method, type set id).
+     */
+    private static final Map<Pair<SootMethod, Integer>, List<SootMethod>> hybridDispatchCache =
+            new ConcurrentHashMap<>();
+    private static final AtomicLong hybridDispatchHits = new AtomicLong();
+    private static final AtomicLong hybridDispatchMisses = new AtomicLong();
 
     public static List<SootMethod> resolveAbstractDispatches(Collection<? extends SootMethodAndClass> methodDefs,
                                                              boolean ignoreUnresolved) {
-        return methodDefs.stream().map(methodDef -> resolveAbstractDispatch(methodDef, ignoreUnresolved))
+        MethodSignatureResolver resolver = new MethodSignatureResolver();
+        return methodDefs.stream().map(methodDef -> resolveAbstractDispatch(methodDef, ignoreUnresolved, resolver))
                 .flatMap(Collection::stream).collect(Collectors.toList());
     }
 
@@ -98,31 +131,39 @@ public class HierarchyUtil {
      */
     public static <T extends SootMethodAndClass> ListMultimap<T, SootMethod> resolveAbstractDispatchesToMap(
             Collection<T> methodDefs) {
+        MethodSignatureResolver resolver = new MethodSignatureResolver();
         return methodDefs.stream().collect(MyCollectors.toMultimapForCollection(
                 ArrayListMultimap::create,
                 methodDef -> methodDef,
-                methodDef -> resolveAbstractDispatch(methodDef, false)
+                methodDef -> resolveAbstractDispatch(methodDef, false, resolver)
         ));
     }
 
     public static List<SootMethod> resolveAbstractDispatch(SootMethodAndClass methodDef, boolean ignoreUnresolved) {
-        Scene scene = Scene.v();
-        SootClass clazz = scene.getSootClassUnsafe(methodDef.getClassName());
+        return resolveAbstractDispatch(methodDef, ignoreUnresolved, new MethodSignatureResolver());
+    }
+
+    /**
+     * @param resolver shared by all defs in a batch, so that classes and abstract dispatches are resolved only once.
+     */
+    private static List<SootMethod> resolveAbstractDispatch(SootMethodAndClass methodDef, boolean ignoreUnresolved,
+                                                            MethodSignatureResolver resolver) {
+        SootClass clazz = resolver.getClass(methodDef.getClassName());
         if (clazz == null) {
             return Collections.emptyList();
         } else if (clazz.isPhantom() && !ignoreUnresolved) {
             throw new RuntimeException("Checker/sensitive declaring class is phantom: " + clazz);
         } else {
-            SootMethod method = scene.grabMethod(methodDef.getSignature());
+            SootMethod method = resolver.grabMethod(methodDef.getSignature());
 
             //Workaround for soot bug: sometimes scene contains methods with name wrapped into ''.
             //Example: SubscriptionManager.from()
             if (method == null) {
-                method = scene.grabMethod(getSignatureWithQuotes(methodDef));
+                method = resolver.grabMethod(getSignatureWithQuotes(methodDef));
             }
 
             if (method != null) {
-                return scene.getActiveHierarchy().resolveAbstractDispatch(clazz, method);
+                return resolver.resolveAbstractDispatch(clazz, method);
             } else {
                 logger.warn("Class " + clazz + " is in Scene but method " + methodDef.getSignature() + " is not.");
                 System.err.println("Existing methods in " + clazz + " :");
@@ -149,8 +190,85 @@ public class HierarchyUtil {
         return s;
     }
 
+    /**
+     * Replaces invokeDispatchesCache with an empty cache of the given size.
+     */
+    public static synchronized void configureDispatchCache(int maxSize) {
+        invokeDispatchesCache = new BoundedCache<>("Invoke dispatch", maxSize);
+    }
+
+    /**
+     * Clears all caches of this class. Called automatically when Scene changes.
+     */
+    public static synchronized void reset() {
+        invokeDispatchesCache = new BoundedCache<>("Invoke dispatch", invokeDispatchesCache.getMaxSize());
+        typeSetIds.clear();
+        hybridDispatchCache.clear();
+        hybridDispatchHits.set(0);
+        hybridDispatchMisses.set(0);
+        cachesScene = null;
+    }
+
+    private static void checkScene() {
+        if (cachesScene != Scene.v()) {
+            synchronized (HierarchyUtil.class) {
+                if (cachesScene != Scene.v()) {
+                    reset();
+                    cachesScene = Scene.v();
+                }
+            }
+        }
+    }
+
+    public static String getDispatchCacheStats() {
+        return invokeDispatchesCache.toString();
+    }
+
+    /**
+     * Memoized, thread-safe. Result is unmodifiable.
+     * <p>
+     * Cache misses are computed while holding the Scene lock, same as in SceneScanner. Soot Hierarchy fills its
+     * dispatch caches lazily, in maps that are not thread-safe.
+     */
     public static List<SootMethod> resolveHybridDispatch(SootMethod staticTargetMethod,
                                                          Set<Type> targetPossibleTypes) {
+        checkScene();
+        Integer typeSetId = typeSetIds.get(targetPossibleTypes);
+        if (typeSetId == null) {
+            //copy, possible types might be a view over points-to data
+            typeSetId = typeSetIds.computeIfAbsent(Collections.unmodifiableSet(new HashSet<>(targetPossibleTypes)),
+                    key -> nextTypeSetId.getAndIncrement());
+        }
+        Pair<SootMethod, Integer> key = new Pair<>(staticTargetMethod, typeSetId);
+        List<SootMethod> cached = hybridDispatchCache.get(key);
+        if (cached != null) {
+            hybridDispatchHits.incrementAndGet();
+            return cached;
+        }
+        synchronized (Scene.v()) {
+            //another thread might have computed it while we were waiting for the lock
+            cached = hybridDispatchCache.get(key);
+            if (cached != null) {
+                hybridDispatchHits.incrementAndGet();
+                return cached;
+            }
+            hybridDispatchMisses.incrementAndGet();
+            List<SootMethod> result = computeHybridDispatch(staticTargetMethod, targetPossibleTypes);
+            hybridDispatchCache.put(key, result);
+            return result;
+        }
+    }
+
+    public static String getHybridDispatchStats() {
+        long hits = hybridDispatchHits.get();
+        long total = hits + hybridDispatchMisses.get();
+        return "Hybrid dispatch cache: " + hybridDispatchCache.size() + " entries, " + typeSetIds.size()
+                + " type sets, hits " + hits + ", misses " + (total - hits)
+                + (total > 0 ? String.format(", hit rate %.1f%%", hits * 100.0 / total) : "");
+    }
+
+    private static List<SootMethod> computeHybridDispatch(SootMethod staticTargetMethod,
+                                                          Set<Type> targetPossibleTypes) {
         Hierarchy hierarchy = Scene.v().getActiveHierarchy();
         Set<SootMethod> set = new ArraySet<>();
         for (Type cls : new ArrayList<>(targetPossibleTypes)) {
@@ -219,21 +337,57 @@ public class HierarchyUtil {
             logger.debug("Exception in getMethod() for " + invoke + " : " + e.toString());
             return Collections.emptyList();
         }
+        return dispatchInvokeMethod(invokeMethod);
+    }
 
-        if (!invokeDispatchesCache.containsKey(invokeMethod)) {
-            try {
-                List<SootMethod> targetMethods = Scene.v().getActiveHierarchy()
-                        .resolveAbstractDispatch(invokeMethod.getDeclaringClass(), invokeMethod);
-                invokeDispatchesCache.put(invokeMethod, targetMethods);
-            } catch (Exception e) {
-                //Happens if a concrete class doesn't implement a method from an implemented
-                //interface. Which in turn happens when some linked jar versions are mismatched.
-                //Another possibility is a class hierarchy containing a phantom class.
-                logger.error(e.getMessage(), e);
-                invokeDispatchesCache.put(invokeMethod, Collections.emptyList());
+    /**
+     * Abstract dispatch of a statically invoked method, through Hierarchy.resolveAbstractDispatch(). Results are
+     * cached. Cache misses are not thread-safe, see dispatchInvokeMethodLocked().
+     */
+    public static List<SootMethod> dispatchInvokeMethod(SootMethod invokeMethod) {
+        return dispatchInvokeMethod(invokeMethod, false);
+    }
+
+    /**
+     * Same as dispatchInvokeMethod(), for callers running in parallel with other users of the Scene. Cache misses are
+     * computed under the Scene lock, Hierarchy caches are not thread-safe.
+     */
+    public static List<SootMethod> dispatchInvokeMethodLocked(SootMethod invokeMethod) {
+        return dispatchInvokeMethod(invokeMethod, true);
+    }
+
+    private static List<SootMethod> dispatchInvokeMethod(SootMethod invokeMethod, boolean sceneLock) {
+        checkScene();
+        BoundedCache<SootMethod, List<SootMethod>> cache = invokeDispatchesCache;
+        List<SootMethod> cached = cache.get(invokeMethod);
+        if (cached != null) {
+            return cached;
+        }
+        List<SootMethod> targetMethods;
+        if (sceneLock) {
+            synchronized (Scene.v()) {
+                targetMethods = computeAbstractDispatch(invokeMethod);
             }
+        } else {
+            targetMethods = computeAbstractDispatch(invokeMethod);
+        }
+        cache.put(invokeMethod, targetMethods);
+        return targetMethods;
+    }
+
+    private static List<SootMethod> computeAbstractDispatch(SootMethod invokeMethod) {
+        List<SootMethod> targetMethods;
+        try {
+            targetMethods = Scene.v().getActiveHierarchy()
+                    .resolveAbstractDispatch(invokeMethod.getDeclaringClass(), invokeMethod);
+        } catch (Exception e) {
+            //Happens if a concrete class doesn't implement a method from an implemented
+            //interface. Which in turn happens when some linked jar versions are mismatched.
+            //Another possibility is a class hierarchy containing a phantom class.
+            logger.error(e.getMessage(), e);
+            targetMethods = Collections.emptyList();
         }
-        return invokeDispatchesCache.get(invokeMethod);
+        return targetMethods;
     }
 
 }
@@ -0,0 +1,81 @@
+package org.oregonstate.droidperm.util;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads data written by InternedDataOutput. See there for the format.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class InternedDataInput implements Closeable {
+
+    private final DataInputStream in;
+    private final List<String> stringTable = new ArrayList<>();
+
+    public InternedDataInput(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    public String readString() throws IOException {
+        int code = readVarInt();
+        if (code == 0) {
+            return null;
+        }
+        int index = code - 1;
+        if (index < stringTable.size()) {
+            return stringTable.get(index);
+        }
+        if (index != stringTable.size()) {
+            throw new IOException("Corrupted string table, index " + index + ", table size " + stringTable.size());
+        }
+        byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        //interned, since the same strings are shared among many files in batch processing
+        String value = new String(bytes, StandardCharsets.UTF_8).intern();
+        stringTable.add(value);
+        return value;
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public boolean readBoolean() throws IOException {
+        return in.readBoolean();
+    }
+
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    public <E extends Enum<E>> E readEnum(Class<E> enumClass) throws IOException {
+        int code = readVarInt();
+        if (code == 0) {
+            return null;
+        }
+        E[] values = enumClass.getEnumConstants();
+        if (code > values.length) {
+            throw new IOException("Invalid " + enumClass.getSimpleName() + " ordinal: " + (code - 1));
+        }
+        return values[code - 1];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
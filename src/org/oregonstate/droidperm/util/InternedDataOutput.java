@@ -0,0 +1,81 @@
+package org.oregonstate.droidperm.util;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary output with variable-length ints and an implicit string table. Each distinct string is written once, length
+ * prefixed. Later occurrences are written as the index into the table. To be read with InternedDataInput.
+ * <p>
+ * String encoding: varint 0 = null, varint i+1 = string with index i. If i is the next free index, the string content
+ * follows.
+ *
+ * @author Denis Bogdanas <bogdanad@oregonstate.edu> Created on 10/17/2026.
+ */
+public class InternedDataOutput implements Closeable {
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringTable = new HashMap<>();
+
+    public InternedDataOutput(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        Integer index = stringTable.get(value);
+        if (index != null) {
+            writeVarInt(index + 1);
+        } else {
+            index = stringTable.size();
+            stringTable.put(value, index);
+            writeVarInt(index + 1);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Unsigned LEB128. Negative values take 5 bytes.
+     */
+    public void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        out.writeBoolean(value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    /**
+     * Null is encoded as 0, other values as ordinal + 1.
+     */
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeVarInt(value == null ? 0 : value.ordinal() + 1);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
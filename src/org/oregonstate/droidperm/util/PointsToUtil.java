@@ -1,5 +1,6 @@
 package org.oregonstate.droidperm.util;
 
+import org.oregonstate.droidperm.scene.SnapshotPointsToAnalysis;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import soot.*;
@@ -57,6 +58,10 @@ public class PointsToUtil {
      * If target is of type array, returns points-to set of array elements.
      */
     public static PointsToSet getPointsToWithFallback(Local target, Stmt context, PointsToAnalysis pta) {
+        if (pta instanceof SnapshotPointsToAnalysis) {
+            //fallback results are precomputed by the snapshot
+            return ((SnapshotPointsToAnalysis) pta).getPointsToWithFallback(target, context);
+        }
         try {
             PointsToSet pointsToSet = null;
             if (context != null) {
@@ -3,7 +3,10 @@ package org.oregonstate.droidperm.util;
 import com.google.common.collect.Iterators;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -51,4 +54,15 @@ public class StreamUtil {
         map1.putAll(map2);
         return map1;
     }
+
+    /**
+     * Maps the items in parallel, using the given pool. The order of results is the order of items. If pool is null,
+     * items are mapped sequentially in the current thread.
+     */
+    public static <T, R> List<R> mapInOrder(List<T> items, Function<T, R> mapper, ForkJoinPool pool) {
+        if (pool == null) {
+            return items.stream().map(mapper).collect(Collectors.toList());
+        }
+        return pool.submit(() -> items.parallelStream().map(mapper).collect(Collectors.toList())).join();
+    }
 }